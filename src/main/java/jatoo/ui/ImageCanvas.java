@@ -16,12 +16,15 @@
 
 package jatoo.ui;
 
+import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.util.Locale;
 
 import javax.swing.JComponent;
 
@@ -37,6 +40,24 @@ import jatoo.image.ImageUtils;
  * <li>the resized image will be centered</li>
  * </ul>
  * 
+ * Optionally (see {@link #setTiledRendering(boolean)}), the resized image is painted through cached tiles, only the
+ * ones intersecting the clip (useful for large images, zoomed in). And, if the pyramid of the image is provided (see
+ * {@link #setImagePyramid(ImagePyramid)}), the resized image is painted from its nearest level (useful for large
+ * images, zoomed out). When the whole image is visible (the "best fit" mode), the resized image is kept, so a repaint
+ * is a single copy (see {@link ImageCanvasScaledImage}).
+ * <p>
+ * The tiles and the kept resized image are in the format of the screen, so an image in any other format (like the
+ * compact {@link BufferedImage#TYPE_3BYTE_BGR}) is converted once, not on every paint.
+ * <p>
+ * For the images too large to be decoded whole, only the visible regions can be decoded and painted (see
+ * {@link #setImageRegionDecoder(ImageRegionDecoder)}).
+ * <p>
+ * An opaque canvas (see {@link #setOpaque(boolean)}) fills its background, so it can be scrolled by copying the
+ * visible pixels (see {@link javax.swing.JViewport#BLIT_SCROLL_MODE}), only the newly exposed areas being painted.
+ * <p>
+ * The rendering can be measured (see {@link ImageMetrics}), optionally with the metrics painted over the image (see
+ * {@link #setMetricsOverlay(boolean)}).
+ * 
  * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
  * @version 3.2, March 14, 2019
  */
@@ -55,6 +76,27 @@ public class ImageCanvas extends JComponent {
   /** Interpolation hint value (how an image is scaled during a rendering operation). */
   private Object interpolationHint = RenderingHints.VALUE_INTERPOLATION_BILINEAR;
 
+  /** The pyramid of the image (the resized image is painted from its nearest level), if any. */
+  private ImagePyramid pyramid;
+
+  /** The tiles of the resized image, or <code>null</code> if the tiled rendering is disabled. */
+  private ImageCanvasTiles tiles;
+
+  /** The resized image, kept while the whole image is visible. */
+  private final ImageCanvasScaledImage scaledImage = new ImageCanvasScaledImage(this);
+
+  /** The decoder of the visible regions (the image is only its overview), if any. */
+  private ImageRegionDecoder regionDecoder;
+
+  /** The size the image is painted at, as if it was that big (for a preview of a bigger image), if any. */
+  private Dimension imageSize;
+
+  /** Paint fast (while the size changes on every frame, for example during an animated zoom), nothing is cached. */
+  private boolean fastPainting;
+
+  /** Paint the metrics (see {@link ImageMetrics}) over the image. */
+  private boolean metricsOverlay;
+
   /**
    * Creates a canvas instance with no image.
    */
@@ -78,9 +120,70 @@ public class ImageCanvas extends JComponent {
    */
   public final void setImage(final BufferedImage image) {
     this.image = image;
+    this.imageSize = null;
+    this.pyramid = null;
+    setRegionDecoder(null);
+    if (tiles != null) {
+      tiles.clear();
+    }
+    scaledImage.clear();
     repaint();
   }
 
+  /**
+   * Updates the image this canvas will paint with the preview of a bigger image (for example the thumbnail embedded in
+   * the file): the preview is painted at the size of the image, so it is fitted and positioned as the image will be.
+   * 
+   * @param preview
+   *          the preview to be painted
+   * @param imageWidth
+   *          the width of the image
+   * @param imageHeight
+   *          the height of the image
+   */
+  public final void setImagePreview(final BufferedImage preview, final int imageWidth, final int imageHeight) {
+    setImage(preview);
+    this.imageSize = new Dimension(imageWidth, imageHeight);
+  }
+
+  /**
+   * Paints the image through the specified decoder: only the visible regions are decoded (see
+   * {@link ImageRegionDecoder}), the image of the canvas is the overview.
+   * 
+   * @param regionDecoder
+   *          the decoder of the image to be painted
+   */
+  public final void setImageRegionDecoder(final ImageRegionDecoder regionDecoder) {
+    setImage(regionDecoder.getOverview());
+    setRegionDecoder(regionDecoder);
+  }
+
+  /**
+   * Returns the decoder the image is painted through, if any.
+   * 
+   * @return the decoder, or <code>null</code> if the whole image is painted
+   */
+  public final ImageRegionDecoder getImageRegionDecoder() {
+    return regionDecoder;
+  }
+
+  private void setRegionDecoder(final ImageRegionDecoder regionDecoder) {
+
+    if (this.regionDecoder != null) {
+      this.regionDecoder.setListener(null);
+    }
+
+    this.regionDecoder = regionDecoder;
+
+    if (regionDecoder != null) {
+      regionDecoder.setListener(new Runnable() {
+        public void run() {
+          repaint();
+        }
+      });
+    }
+  }
+
   /**
    * Returns the image this canvas paints.
    * 
@@ -90,6 +193,52 @@ public class ImageCanvas extends JComponent {
     return image;
   }
 
+  /**
+   * Must be called after the pixels of the image were changed (for example while the image is progressively decoded):
+   * drops everything derived from the image (the pyramid, the tiles, the resized image) and repaints.
+   */
+  public final void fireImageUpdated() {
+
+    pyramid = null;
+
+    if (tiles != null) {
+      tiles.clear();
+    }
+
+    scaledImage.clear();
+
+    repaint();
+  }
+
+  /**
+   * Sets the pyramid of the image: the resized image will be painted from the nearest level of the pyramid, so the cost
+   * of painting a zoomed out image is proportional to the painted pixels. Ignored if it is not the pyramid of the
+   * current image.
+   * 
+   * @param pyramid
+   *          the pyramid of the image, or <code>null</code> to paint from the image itself
+   */
+  public final void setImagePyramid(final ImagePyramid pyramid) {
+
+    if (pyramid != null && pyramid.getImage() != image) {
+      return;
+    }
+
+    this.pyramid = pyramid;
+
+    if (tiles != null) {
+      tiles.clear();
+    }
+
+    scaledImage.clear();
+
+    repaint();
+  }
+
+  public final ImagePyramid getImagePyramid() {
+    return pyramid;
+  }
+
   /**
    * Gets the bounds of the painted image in the form of a {@link Rectangle} object.
    * 
@@ -99,6 +248,68 @@ public class ImageCanvas extends JComponent {
     return imageBounds;
   }
 
+  /**
+   * Calculates the bounds the image is painted at, for the specified size of the canvas (unlike
+   * {@link #getImageBounds()}, which returns the ones of the last paint).
+   * 
+   * @param canvasWidth
+   *          the width of the canvas
+   * @param canvasHeight
+   *          the height of the canvas
+   * 
+   * @return the bounds of the image, or <code>null</code> if there is no image
+   */
+  public final Rectangle calculateImageBounds(final int canvasWidth, final int canvasHeight) {
+
+    if (image == null) {
+      return null;
+    }
+
+    return calculateImageBounds(image, canvasWidth, canvasHeight);
+  }
+
+  private Rectangle calculateImageBounds(final BufferedImage image, final int canvasWidth, final int canvasHeight) {
+
+    final int imageBoundsWidth;
+    final int imageBoundsHeight;
+
+    if (regionDecoder != null || imageSize != null) {
+
+      //
+      // the size of the whole image, not of the overview (or of the preview)
+
+      final int wholeImageWidth = regionDecoder != null ? regionDecoder.getWidth() : imageSize.width;
+      final int wholeImageHeight = regionDecoder != null ? regionDecoder.getHeight() : imageSize.height;
+
+      if (paintRealSize) {
+        imageBoundsWidth = wholeImageWidth;
+        imageBoundsHeight = wholeImageHeight;
+      }
+
+      else {
+        final double ratio = Math.min((double) canvasWidth / wholeImageWidth, (double) canvasHeight / wholeImageHeight);
+        imageBoundsWidth = (int) (wholeImageWidth * ratio);
+        imageBoundsHeight = (int) (wholeImageHeight * ratio);
+      }
+    }
+
+    else if (paintRealSize) {
+      imageBoundsWidth = image.getWidth();
+      imageBoundsHeight = image.getHeight();
+    }
+
+    else {
+      Dimension sizeToFit = ImageUtils.calculateSizeToFit(image, canvasWidth, canvasHeight);
+      imageBoundsWidth = sizeToFit.width;
+      imageBoundsHeight = sizeToFit.height;
+    }
+
+    int imageBoundsX = (canvasWidth - imageBoundsWidth) / 2;
+    int imageBoundsY = (canvasHeight - imageBoundsHeight) / 2;
+
+    return new Rectangle(imageBoundsX, imageBoundsY, imageBoundsWidth, imageBoundsHeight);
+  }
+
   public void setPaintRealSize(boolean paintRealSize) {
     this.paintRealSize = paintRealSize;
   }
@@ -107,6 +318,99 @@ public class ImageCanvas extends JComponent {
     return paintRealSize;
   }
 
+  /**
+   * Enables (or disables) the tiled rendering: the resized image is split in tiles, rendered once (for each size) and
+   * cached, and only the tiles intersecting the clip are painted, see {@link ImageCanvasTiles}.
+   * 
+   * @param tiledRendering
+   *          <code>true</code> to enable the tiled rendering
+   */
+  public void setTiledRendering(final boolean tiledRendering) {
+
+    if (tiledRendering == isTiledRendering()) {
+      return;
+    }
+
+    tiles = tiledRendering ? new ImageCanvasTiles() : null;
+    repaint();
+  }
+
+  public boolean isTiledRendering() {
+    return tiles != null;
+  }
+
+  /**
+   * Returns the tiles of the resized image.
+   * 
+   * @return the tiles, or <code>null</code> if the tiled rendering is disabled
+   */
+  public ImageCanvasTiles getTiles() {
+    return tiles;
+  }
+
+  /**
+   * Sets whether the resized image (kept while the whole image is visible) is built in background, with a fast
+   * preview painted meanwhile.
+   * 
+   * @param scaledImageAsync
+   *          <code>true</code> to build the resized image in background
+   */
+  public void setScaledImageAsync(final boolean scaledImageAsync) {
+    scaledImage.setAsync(scaledImageAsync);
+  }
+
+  public boolean isScaledImageAsync() {
+    return scaledImage.isAsync();
+  }
+
+  /**
+   * Enables (or disables) the fast painting, for when the size of the painted image changes on every frame (for example
+   * during an animated zoom): the resized image is painted straight from the nearest level of the pyramid (only the
+   * clip), nothing is cached (the tiles or the resized image of an intermediate size would never be used again). Once
+   * disabled, the image is painted again at the full quality.
+   * 
+   * @param fastPainting
+   *          <code>true</code> to enable the fast painting
+   */
+  public void setFastPainting(final boolean fastPainting) {
+
+    if (fastPainting == this.fastPainting) {
+      return;
+    }
+
+    this.fastPainting = fastPainting;
+    repaint();
+  }
+
+  public boolean isFastPainting() {
+    return fastPainting;
+  }
+
+  /**
+   * Shows (or hides) the metrics of the rendering (see {@link ImageMetrics}), painted over the top left corner of the
+   * visible part of the canvas. Showing the metrics also enables them.
+   * <p>
+   * The overlay moves along with the canvas when scrolled by copying the pixels (see
+   * {@link javax.swing.JViewport#BLIT_SCROLL_MODE}), so the viewport should repaint the whole view while it is shown.
+   * 
+   * @param metricsOverlay
+   *          <code>true</code> to show the metrics
+   */
+  public void setMetricsOverlay(final boolean metricsOverlay) {
+
+    this.metricsOverlay = metricsOverlay;
+
+    if (metricsOverlay) {
+      ImageMetrics.getInstance().setEnabled(true);
+    }
+
+    repaint();
+  }
+
+  public boolean isMetricsOverlay() {
+    return metricsOverlay;
+  }
+
   /**
    * @see #interpolationHint
    * @see RenderingHints#KEY_INTERPOLATION
@@ -150,6 +454,14 @@ public class ImageCanvas extends JComponent {
   protected final void paintComponent(final Graphics graphics) {
     super.paintComponent(graphics);
 
+    //
+    // an opaque canvas paints its own background (there is no UI delegate to do it)
+
+    if (isOpaque()) {
+      graphics.setColor(getBackground());
+      graphics.fillRect(0, 0, getWidth(), getHeight());
+    }
+
     //
     // no image, no paint
 
@@ -174,7 +486,16 @@ public class ImageCanvas extends JComponent {
       int canvasWidth = getWidth();
       int canvasHeight = getHeight();
 
+      final ImageMetrics metrics = ImageMetrics.getInstance();
+      final long startTime = metrics.startTime();
+
       paintImage(g, image, canvasWidth, canvasHeight);
+
+      metrics.paintFinished(startTime);
+
+      if (metricsOverlay) {
+        paintMetrics(g, metrics);
+      }
     }
 
     //
@@ -187,30 +508,97 @@ public class ImageCanvas extends JComponent {
 
   protected void paintImage(final Graphics2D g, final BufferedImage image, final int canvasWidth, final int canvasHeight) {
 
-    final int imageBoundsWidth;
-    final int imageBoundsHeight;
+    final Rectangle bounds = calculateImageBounds(image, canvasWidth, canvasHeight);
 
-    if (paintRealSize) {
-      imageBoundsWidth = image.getWidth();
-      imageBoundsHeight = image.getHeight();
+    paintImage(g, image, bounds.x, bounds.y, bounds.width, bounds.height);
+
+    imageBounds = bounds;
+  }
+
+  protected void paintImage(final Graphics2D g, final BufferedImage image, final int x, final int y, final int width, final int height) {
+
+    //
+    // only the visible regions are decoded
+
+    if (regionDecoder != null) {
+      regionDecoder.paint(g, x, y, width, height);
+      return;
     }
 
-    else {
-      Dimension sizeToFit = ImageUtils.calculateSizeToFit(image, canvasWidth, canvasHeight);
-      imageBoundsWidth = sizeToFit.width;
-      imageBoundsHeight = sizeToFit.height;
+    //
+    // the nearest level of the pyramid (if any) not smaller than the painted size
+
+    final BufferedImage source = pyramid != null && pyramid.getImage() == image ? pyramid.getLevel(width, height) : image;
+
+    //
+    // not resized (and in the format of the screen), the image is just copied (and clipped)
+    // (an image in another format is converted on every paint, so it goes through the compatible copies below)
+
+    if (width == source.getWidth() && height == source.getHeight() && UIUtils.isCompatibleImage(g.getDeviceConfiguration(), source)) {
+      g.drawImage(source, x, y, null);
     }
 
-    int imageBoundsX = (canvasWidth - imageBoundsWidth) / 2;
-    int imageBoundsY = (canvasHeight - imageBoundsHeight) / 2;
+    //
+    // the size changes on every frame, nothing to be cached
 
-    paintImage(g, image, imageBoundsX, imageBoundsY, imageBoundsWidth, imageBoundsHeight);
+    else if (fastPainting) {
+      g.drawImage(source, x, y, width, height, null);
+      ImageMetrics.getInstance().addScaledPixels(g, x, y, width, height);
+    }
+
+    //
+    // the whole image is visible, the resized image is kept
+    // (visible in the viewport, not just inside the canvas, which is as big as the zoomed image in a viewer)
+
+    else if (getVisibleRect().contains(x, y, width, height)) {
+      scaledImage.paint(g, image, source, interpolationHint, x, y, width, height);
+    }
+
+    //
+    // only a part of the image is visible, the tiles (if enabled) intersecting the clip are painted
+
+    else if (tiles != null) {
+      tiles.paint(g, image, source, interpolationHint, x, y, width, height);
+    }
 
-    imageBounds = new Rectangle(imageBoundsX, imageBoundsY, imageBoundsWidth, imageBoundsHeight);
+    else {
+      g.drawImage(source, x, y, width, height, null);
+      ImageMetrics.getInstance().addScaledPixels(g, x, y, width, height);
+    }
   }
 
-  protected void paintImage(final Graphics2D g, final BufferedImage image, final int x, final int y, final int width, final int height) {
-    g.drawImage(image, x, y, width, height, null);
+  /**
+   * Paints the metrics over the top left corner of the visible part of the canvas.
+   */
+  private void paintMetrics(final Graphics2D g, final ImageMetrics metrics) {
+
+    final String[] lines = {
+        String.format(Locale.US, "paint: %.1f ms (avg %.1f, max %.1f)", metrics.getLastPaintTime(), metrics.getPaintTimeAverage(), metrics.getPaintTimeMax()),
+        String.format(Locale.US, "scaled: %,d px (total %,d)", metrics.getLastScaledPixels(), metrics.getScaledPixels()),
+        String.format(Locale.US, "zoom: %.1f ms (avg %.1f, max %.1f)", metrics.getLastZoomTime(), metrics.getZoomTimeAverage(), metrics.getZoomTimeMax()),
+        String.format(Locale.US, "decode: avg %.0f ms, max %.0f ms (%d)", metrics.getDecodeTimeAverage(), metrics.getDecodeTimeMax(), metrics.getDecodeCount()),
+        String.format(Locale.US, "queues: loader %d, icons %d", metrics.getImageLoaderQueueSize(), metrics.getIconsQueueSize()) };
+
+    final Rectangle visibleRect = getVisibleRect();
+    final FontMetrics fontMetrics = g.getFontMetrics();
+
+    int width = 0;
+
+    for (String line : lines) {
+      width = Math.max(width, fontMetrics.stringWidth(line));
+    }
+
+    final int padding = 4;
+    final int lineHeight = fontMetrics.getHeight();
+
+    g.setColor(new Color(0, 0, 0, 160));
+    g.fillRect(visibleRect.x, visibleRect.y, width + padding * 2, lineHeight * lines.length + padding * 2);
+
+    g.setColor(Color.WHITE);
+
+    for (int i = 0; i < lines.length; i++) {
+      g.drawString(lines[i], visibleRect.x + padding, visibleRect.y + padding + i * lineHeight + fontMetrics.getAscent());
+    }
   }
 
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * The scaled image layer for {@link ImageCanvas}: when the whole image is visible (for example in the "best fit" mode)
+ * the scaled image is kept, so a repaint (for any reason) is a single copy, the image is scaled again only when the
+ * image, the size or the interpolation changes. The scaled image is a compatible image (see
+ * {@link UIUtils#createCompatibleImage(GraphicsConfiguration, int, int, boolean)}).
+ * <p>
+ * Optionally (see {@link #setAsync(boolean)}), the scaled image is built in background: meanwhile a fast (nearest
+ * neighbor) preview is painted, and the component is repainted when the scaled image is ready. Must be used only on
+ * the event dispatch thread.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageCanvasScaledImage {
+
+  private final Component component;
+
+  private boolean async;
+  private ExecutorService executor;
+
+  /** What the scaled image is for. */
+  private Key key;
+  private BufferedImage scaledImage;
+
+  /** What the scaled image being built (in background) is for, if any. */
+  private volatile Key pendingKey;
+
+  private long hits;
+  private long builds;
+
+  /**
+   * Creates the scaled image layer.
+   * 
+   * @param component
+   *          the component to be repainted when a scaled image built in background is ready
+   */
+  public ImageCanvasScaledImage(final Component component) {
+    this.component = component;
+  }
+
+  /**
+   * Sets whether the scaled image is built in background (with a fast preview painted meanwhile) or right away.
+   * 
+   * @param async
+   *          <code>true</code> to build the scaled image in background
+   */
+  public void setAsync(final boolean async) {
+    this.async = async;
+  }
+
+  public boolean isAsync() {
+    return async;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getBuilds() {
+    return builds;
+  }
+
+  public void clear() {
+    key = null;
+    scaledImage = null;
+    pendingKey = null;
+  }
+
+  /**
+   * Paints the image, scaled to the specified bounds.
+   * 
+   * @param g
+   *          the graphics to paint on
+   * @param image
+   *          the image
+   * @param source
+   *          the image the scaled image is built from (the image itself or a level of its {@link ImagePyramid})
+   * @param interpolationHint
+   *          the interpolation (see {@link RenderingHints#KEY_INTERPOLATION}), or <code>null</code> for the default one
+   * @param x
+   *          the x coordinate of the painted image
+   * @param y
+   *          the y coordinate of the painted image
+   * @param width
+   *          the width of the painted image
+   * @param height
+   *          the height of the painted image
+   */
+  public void paint(final Graphics2D g, final BufferedImage image, final BufferedImage source, final Object interpolationHint, final int x, final int y, final int width, final int height) {
+
+    final Key key = new Key(g.getDeviceConfiguration(), image, source, interpolationHint, width, height);
+
+    if (key.equals(this.key)) {
+      hits++;
+      g.drawImage(scaledImage, x, y, null);
+      return;
+    }
+
+    if (!async) {
+      this.key = key;
+      this.scaledImage = scale(key);
+      this.pendingKey = null;
+      builds++;
+      g.drawImage(scaledImage, x, y, null);
+      return;
+    }
+
+    //
+    // the preview, while the scaled image is built in background
+
+    final Graphics2D previewGraphics = (Graphics2D) g.create();
+
+    try {
+      previewGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+      previewGraphics.drawImage(source, x, y, width, height, null);
+      ImageMetrics.getInstance().addScaledPixels(previewGraphics, x, y, width, height);
+    }
+
+    finally {
+      previewGraphics.dispose();
+    }
+
+    if (key.equals(pendingKey)) {
+      return;
+    }
+
+    pendingKey = key;
+
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r, ImageCanvasScaledImage.class.getSimpleName());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+
+    executor.execute(new Runnable() {
+      public void run() {
+
+        //
+        // already replaced by a newer request
+
+        if (!key.equals(pendingKey)) {
+          return;
+        }
+
+        final BufferedImage scaledImage = scale(key);
+
+        SwingUtilities.invokeLater(new Runnable() {
+          public void run() {
+            if (key.equals(pendingKey)) {
+              ImageCanvasScaledImage.this.key = key;
+              ImageCanvasScaledImage.this.scaledImage = scaledImage;
+              pendingKey = null;
+              builds++;
+              component.repaint();
+            }
+          }
+        });
+      }
+    });
+  }
+
+  private static BufferedImage scale(final Key key) {
+
+    final BufferedImage scaledImage = UIUtils.createCompatibleImage(key.gc, key.width, key.height, key.source.getColorModel().hasAlpha());
+
+    final Graphics2D g = scaledImage.createGraphics();
+
+    try {
+
+      if (key.interpolationHint != null) {
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, key.interpolationHint);
+      }
+
+      g.drawImage(key.source, 0, 0, key.width, key.height, null);
+    }
+
+    finally {
+      g.dispose();
+    }
+
+    ImageMetrics.getInstance().addScaledPixels((long) key.width * key.height);
+
+    return scaledImage;
+  }
+
+  private static final class Key {
+
+    private final GraphicsConfiguration gc;
+    private final BufferedImage image;
+    private final BufferedImage source;
+    private final Object interpolationHint;
+    private final int width;
+    private final int height;
+
+    private Key(final GraphicsConfiguration gc, final BufferedImage image, final BufferedImage source, final Object interpolationHint, final int width, final int height) {
+      this.gc = gc;
+      this.image = image;
+      this.source = source;
+      this.interpolationHint = interpolationHint;
+      this.width = width;
+      this.height = height;
+    }
+
+    @Override
+    public int hashCode() {
+      return (System.identityHashCode(image) * 31 + width) * 31 + height;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+
+      final Key key = (Key) obj;
+
+      return gc == key.gc && image == key.image && source == key.source && interpolationHint == key.interpolationHint && width == key.width && height == key.height;
+    }
+  }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The tiled rendering for {@link ImageCanvas}: the scaled image is split in tiles (of the painted size, not of the
+ * image size), rendered on demand and cached, and only the tiles intersecting the clip are painted. So a repaint (for
+ * example a scroll) of a zoomed large image scales only the newly visible tiles, not the whole image. The tiles are
+ * compatible images (see {@link UIUtils#createCompatibleImage(GraphicsConfiguration, int, int, boolean)}).
+ * <p>
+ * The tiles are kept in a LRU (least recently used) order for each painted size (zoom level), the limit is the total
+ * size of the pixels (in bytes). The cache is cleared when the image or the interpolation changes. Must be used only
+ * on the event dispatch thread.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageCanvasTiles {
+
+  /** The default size of the tiles. */
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  /** The default limit: 64 MB of pixels. */
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  private final LinkedHashMap<Key, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+
+  private final int tileSize;
+  private long maxBytes;
+  private long bytes;
+
+  /** The image the tiles are for. */
+  private BufferedImage image;
+
+  /** The interpolation the tiles were rendered with. */
+  private Object interpolationHint;
+
+  /** The graphics configuration the tiles are compatible with. */
+  private GraphicsConfiguration gc;
+
+  private long hits;
+  private long misses;
+
+  public ImageCanvasTiles() {
+    this(DEFAULT_TILE_SIZE, DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * Creates the tiles cache.
+   * 
+   * @param tileSize
+   *          the size of the tiles
+   * @param maxBytes
+   *          the limit of the cache, as the total size of the pixels in bytes
+   */
+  public ImageCanvasTiles(final int tileSize, final long maxBytes) {
+
+    if (tileSize < 1) {
+      throw new IllegalArgumentException("the size of the tiles must be positive: " + tileSize);
+    }
+
+    this.tileSize = tileSize;
+    this.maxBytes = maxBytes;
+  }
+
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  public void setMaxBytes(final long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  public int getSize() {
+    return tiles.size();
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public void clear() {
+    tiles.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Paints (the tiles intersecting the clip of) the image, scaled to the specified bounds.
+   * 
+   * @param g
+   *          the graphics to paint on
+   * @param image
+   *          the image
+   * @param interpolationHint
+   *          the interpolation used to scale the tiles (see {@link RenderingHints#KEY_INTERPOLATION}), or
+   *          <code>null</code> for the default one
+   * @param x
+   *          the x coordinate of the painted image
+   * @param y
+   *          the y coordinate of the painted image
+   * @param width
+   *          the width of the painted image
+   * @param height
+   *          the height of the painted image
+   */
+  public void paint(final Graphics2D g, final BufferedImage image, final Object interpolationHint, final int x, final int y, final int width, final int height) {
+    paint(g, image, image, interpolationHint, x, y, width, height);
+  }
+
+  /**
+   * Paints (the tiles intersecting the clip of) the image, scaled to the specified bounds, with the tiles rendered
+   * from the specified source (for example a level of an {@link ImagePyramid}). The source must be the same for the
+   * same painted size.
+   * 
+   * @param g
+   *          the graphics to paint on
+   * @param image
+   *          the image (the tiles are cleared when it changes)
+   * @param source
+   *          the image the tiles are rendered from
+   * @param interpolationHint
+   *          the interpolation used to scale the tiles (see {@link RenderingHints#KEY_INTERPOLATION}), or
+   *          <code>null</code> for the default one
+   * @param x
+   *          the x coordinate of the painted image
+   * @param y
+   *          the y coordinate of the painted image
+   * @param width
+   *          the width of the painted image
+   * @param height
+   *          the height of the painted image
+   */
+  public void paint(final Graphics2D g, final BufferedImage image, final BufferedImage source, final Object interpolationHint, final int x, final int y, final int width, final int height) {
+
+    if (image != this.image || interpolationHint != this.interpolationHint || g.getDeviceConfiguration() != gc) {
+      clear();
+      this.image = image;
+      this.interpolationHint = interpolationHint;
+      this.gc = g.getDeviceConfiguration();
+    }
+
+    //
+    // the clip, in the coordinates of the painted image
+
+    Rectangle clip = g.getClipBounds();
+
+    if (clip == null) {
+      clip = new Rectangle(x, y, width, height);
+    }
+
+    clip = clip.intersection(new Rectangle(x, y, width, height));
+
+    if (clip.isEmpty()) {
+      return;
+    }
+
+    final int firstColumn = (clip.x - x) / tileSize;
+    final int lastColumn = (clip.x + clip.width - 1 - x) / tileSize;
+    final int firstRow = (clip.y - y) / tileSize;
+    final int lastRow = (clip.y + clip.height - 1 - y) / tileSize;
+
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int column = firstColumn; column <= lastColumn; column++) {
+        g.drawImage(getTile(source, width, height, column, row), x + column * tileSize, y + row * tileSize, null);
+      }
+    }
+
+    evict();
+  }
+
+  private BufferedImage getTile(final BufferedImage source, final int width, final int height, final int column, final int row) {
+
+    final Key key = new Key(width, height, column, row);
+
+    BufferedImage tile = tiles.get(key);
+
+    if (tile != null) {
+      hits++;
+      return tile;
+    }
+
+    misses++;
+
+    //
+    // render the tile: the whole image, scaled and translated, clipped by the tile bounds
+    // (so the adjacent tiles match exactly, with no seams)
+
+    final int tileX = column * tileSize;
+    final int tileY = row * tileSize;
+    final int tileWidth = Math.min(tileSize, width - tileX);
+    final int tileHeight = Math.min(tileSize, height - tileY);
+
+    //
+    // (in the format of the screen, so painting the tile is a straight copy, whatever the format of the source)
+
+    tile = UIUtils.createCompatibleImage(gc, tileWidth, tileHeight, source.getColorModel().hasAlpha());
+
+    final Graphics2D g = tile.createGraphics();
+
+    try {
+
+      if (interpolationHint != null) {
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolationHint);
+      }
+
+      g.translate(-tileX, -tileY);
+      g.scale((double) width / source.getWidth(), (double) height / source.getHeight());
+      g.drawImage(source, 0, 0, null);
+    }
+
+    finally {
+      g.dispose();
+    }
+
+    ImageMetrics.getInstance().addScaledPixels((long) tileWidth * tileHeight);
+
+    tiles.put(key, tile);
+    bytes += getBytes(tile);
+
+    return tile;
+  }
+
+  /**
+   * Evicts the least recently used tiles, until the limit is no longer exceeded (the tiles just painted are the most
+   * recently used, so they are the last to be evicted).
+   */
+  private void evict() {
+    for (Iterator<Map.Entry<Key, BufferedImage>> i = tiles.entrySet().iterator(); bytes > maxBytes && i.hasNext();) {
+      bytes -= getBytes(i.next().getValue());
+      i.remove();
+    }
+  }
+
+  private static long getBytes(final BufferedImage tile) {
+    return ImageLoaderCache.getBytes(tile);
+  }
+
+  private static final class Key {
+
+    private final int width;
+    private final int height;
+    private final int column;
+    private final int row;
+
+    private Key(final int width, final int height, final int column, final int row) {
+      this.width = width;
+      this.height = height;
+      this.column = column;
+      this.row = row;
+    }
+
+    @Override
+    public int hashCode() {
+      return ((width * 31 + height) * 31 + column) * 31 + row;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+
+      final Key key = (Key) obj;
+
+      return width == key.width && height == key.height && column == key.column && row == key.row;
+    }
+  }
+
+}
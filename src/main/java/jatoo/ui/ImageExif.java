@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * A minimal reader for the EXIF metadata embedded in JPEG files (only what the UI components need, without reading the
+ * image data).
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageExif {
+
+  private static final int MARKER_SOI = 0xFFD8;
+  private static final int MARKER_APP1 = 0xFFE1;
+  private static final int MARKER_SOS = 0xFFDA;
+
+  private static final byte[] EXIF_HEADER = { 'E', 'x', 'i', 'f', 0, 0 };
+
+  private static final int TAG_JPEG_INTERCHANGE_FORMAT = 0x0201;
+  private static final int TAG_JPEG_INTERCHANGE_FORMAT_LENGTH = 0x0202;
+  private static final int TAG_EXIF_IFD_POINTER = 0x8769;
+  private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+
+  /** The length of a date time value ("YYYY:MM:DD HH:MM:SS", without the ending NULL). */
+  private static final int DATE_TIME_LENGTH = 19;
+
+  /** The TIFF structure (the EXIF segment without the "Exif" header). */
+  private final ByteBuffer tiff;
+
+  private byte[] thumbnail;
+
+  private long dateTimeOriginal = -1;
+
+  private ImageExif(final ByteBuffer tiff) {
+    this.tiff = tiff;
+  }
+
+  /**
+   * Reads the EXIF metadata from the specified file.
+   * 
+   * @param file
+   *          the (JPEG) image file
+   * 
+   * @return the EXIF metadata, or <code>null</code> if the file is not a JPEG or has no EXIF metadata
+   * 
+   * @throws IOException
+   *           if the file could not be read
+   */
+  public static ImageExif read(final File file) throws IOException {
+
+    try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+      if (stream.readUnsignedShort() != MARKER_SOI) {
+        return null;
+      }
+
+      while (true) {
+
+        final int marker = stream.readUnsignedShort();
+
+        if ((marker & 0xFF00) != 0xFF00 || marker == MARKER_SOS) {
+          return null;
+        }
+
+        final int length = stream.readUnsignedShort() - 2;
+
+        if (length < 0) {
+          return null;
+        }
+
+        if (marker == MARKER_APP1 && length > EXIF_HEADER.length) {
+
+          final byte[] segment = new byte[length];
+          stream.readFully(segment);
+
+          if (Arrays.equals(Arrays.copyOf(segment, EXIF_HEADER.length), EXIF_HEADER)) {
+
+            final ImageExif exif = new ImageExif(ByteBuffer.wrap(segment, EXIF_HEADER.length, length - EXIF_HEADER.length).slice());
+
+            if (exif.parse()) {
+              return exif;
+            } else {
+              return null;
+            }
+          }
+        }
+
+        else {
+          skipFully(stream, length);
+        }
+      }
+    }
+
+    catch (EOFException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the embedded thumbnail (a JPEG image), if any.
+   * 
+   * @return the bytes of the embedded thumbnail, or <code>null</code> if there is none
+   */
+  public byte[] getThumbnail() {
+    return thumbnail;
+  }
+
+  /**
+   * Returns the date and time when the original image was taken (the local time of the camera, interpreted in the
+   * default time zone).
+   * 
+   * @return the date and time in milliseconds (see {@link System#currentTimeMillis()}), or -1 if not present
+   */
+  public long getDateTimeOriginal() {
+    return dateTimeOriginal;
+  }
+
+  private boolean parse() {
+
+    try {
+
+      //
+      // TIFF header: byte order, 42, the offset of the first IFD
+
+      final short byteOrder = tiff.getShort(0);
+
+      if (byteOrder == 0x4949) {
+        tiff.order(ByteOrder.LITTLE_ENDIAN);
+      } else if (byteOrder == 0x4D4D) {
+        tiff.order(ByteOrder.BIG_ENDIAN);
+      } else {
+        return false;
+      }
+
+      if (tiff.getShort(2) != 42) {
+        return false;
+      }
+
+      final int ifd0 = tiff.getInt(4);
+
+      //
+      // the EXIF IFD (pointed from IFD0) has the original date
+
+      final int exifIfd = getTagValue(ifd0, TAG_EXIF_IFD_POINTER);
+
+      if (exifIfd > 0) {
+
+        final int dateTimeOffset = getTagValue(exifIfd, TAG_DATE_TIME_ORIGINAL);
+
+        if (dateTimeOffset > 0 && DATE_TIME_LENGTH <= tiff.limit() - dateTimeOffset) {
+
+          final byte[] dateTime = new byte[DATE_TIME_LENGTH];
+          ((ByteBuffer) tiff.duplicate().position(dateTimeOffset)).get(dateTime);
+
+          dateTimeOriginal = parseDateTime(new String(dateTime, StandardCharsets.US_ASCII));
+        }
+      }
+
+      //
+      // IFD1 (the one after IFD0) describes the thumbnail
+
+      final int ifd1 = getNextIfd(ifd0);
+
+      if (ifd1 > 0) {
+
+        final int thumbnailOffset = getTagValue(ifd1, TAG_JPEG_INTERCHANGE_FORMAT);
+        final int thumbnailLength = getTagValue(ifd1, TAG_JPEG_INTERCHANGE_FORMAT_LENGTH);
+
+        // offset + length can overflow, so the length is compared with what is left after the offset
+        if (thumbnailOffset > 0 && thumbnailLength > 0 && thumbnailLength <= tiff.limit() - thumbnailOffset) {
+          thumbnail = new byte[thumbnailLength];
+          ((ByteBuffer) tiff.duplicate().position(thumbnailOffset)).get(thumbnail);
+        }
+      }
+
+      return true;
+    }
+
+    catch (IndexOutOfBoundsException e) {
+      return false;
+    }
+  }
+
+  private int getNextIfd(final int ifd) {
+    return tiff.getInt(ifd + 2 + getIfdEntries(ifd) * 12);
+  }
+
+  private int getIfdEntries(final int ifd) {
+    return tiff.getShort(ifd) & 0xFFFF;
+  }
+
+  /**
+   * Returns the value of a SHORT or LONG tag, or -1 if the tag is missing.
+   */
+  private int getTagValue(final int ifd, final int tag) {
+
+    for (int i = 0, n = getIfdEntries(ifd); i < n; i++) {
+
+      final int entry = ifd + 2 + i * 12;
+
+      if ((tiff.getShort(entry) & 0xFFFF) == tag) {
+
+        final int type = tiff.getShort(entry + 2) & 0xFFFF;
+
+        if (type == 3) {
+          return tiff.getShort(entry + 8) & 0xFFFF;
+        } else {
+          return tiff.getInt(entry + 8);
+        }
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Parses a "YYYY:MM:DD HH:MM:SS" date time.
+   */
+  private static long parseDateTime(final String dateTime) {
+
+    try {
+
+      final Calendar calendar = Calendar.getInstance();
+      calendar.clear();
+      calendar.set(Integer.parseInt(dateTime.substring(0, 4)), Integer.parseInt(dateTime.substring(5, 7)) - 1, Integer.parseInt(dateTime.substring(8, 10)), Integer.parseInt(dateTime.substring(11, 13)), Integer.parseInt(dateTime.substring(14, 16)), Integer.parseInt(dateTime.substring(17, 19)));
+
+      return calendar.getTimeInMillis();
+    }
+
+    catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void skipFully(final DataInputStream stream, final int length) throws IOException {
+
+    int skipped = 0;
+
+    while (skipped < length) {
+
+      final int n = stream.skipBytes(length - skipped);
+
+      if (n <= 0) {
+        throw new EOFException();
+      }
+
+      skipped += n;
+    }
+  }
+
+}
@@ -26,7 +26,11 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelListener;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.swing.AbstractAction;
@@ -37,12 +41,19 @@ import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.ListSelectionListener;
 
+import jatoo.image.ImageFileFilter;
 import jatoo.image.ImageUtils;
 import net.miginfocom.swing.MigLayout;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 /**
  * A component that displays a list of images from {@link File}s.
  * 
@@ -52,11 +63,25 @@ import net.miginfocom.swing.MigLayout;
 @SuppressWarnings("serial")
 public class ImageFileList extends JPanel {
 
+  private final Log logger = LogFactory.getLog(getClass());
+
   private final JList<File> list;
 
   private final ImageFileListIcons icons;
   private final ImageFileListModel model;
   private final ImageFileListCellRenderer renderer;
+  private final ImageFileListIconsNotifier iconsNotifier;
+
+  private final ImageFileListMetadata metadata;
+  private final ImageFileListSorter sorter;
+
+  private ImageFileListSorter.Key imagesSortKey;
+  private boolean imagesSortAscending = true;
+  private ImageFileListFilter imagesFilter;
+
+  private final List<ImageFileListFolderScanner> folderScanners = new ArrayList<>();
+
+  private ImageFileListFolderWatcher folderWatcher;
 
   private final JScrollPane scrollPane;
 
@@ -65,6 +90,9 @@ public class ImageFileList extends JPanel {
 
   private int itemSpace;
 
+  /** How many "pages" (the number of visible items) above and below the visible ones have their icons prefetched. */
+  private int iconPrefetchPages = 1;
+
   private final boolean isInitializationDone;
 
   public ImageFileList() {
@@ -93,9 +121,28 @@ public class ImageFileList extends JPanel {
     //
     // init list
 
-    icons = new ImageFileListIcons(this);
+    icons = createIcons();
     model = new ImageFileListModel();
     renderer = new ImageFileListCellRenderer(this, icons);
+    iconsNotifier = new ImageFileListIconsNotifier(model);
+
+    //
+    // the metadata is extracted in background, and once done the sort and the filter are applied again
+
+    metadata = new ImageFileListMetadata();
+    sorter = new ImageFileListSorter(this, model, metadata);
+
+    metadata.setExtractedListener(new Runnable() {
+      public void run() {
+        SwingUtilities.invokeLater(new Runnable() {
+          public void run() {
+            if (imagesSortKey != null || imagesFilter != null) {
+              sorter.sort(imagesSortKey, imagesSortAscending, imagesFilter);
+            }
+          }
+        });
+      }
+    });
 
     final int listScrollableUnitIncrement = Math.max(9, iconSize / 10);
 
@@ -112,6 +159,12 @@ public class ImageFileList extends JPanel {
     list.setModel(model);
     list.setCellRenderer(renderer);
 
+    //
+    // all the cells have the size of the renderer, so the list does not ask the renderer for the size of each cell
+    // (on every layout)
+
+    updateFixedCellSize();
+
     list.setBorder(BorderFactory.createEmptyBorder(0, 0, itemSpace, itemSpace));
 
     //
@@ -121,7 +174,7 @@ public class ImageFileList extends JPanel {
     list.setVisibleRowCount(rows);
 
     for (int i = 1; i <= (rows * columns - 1); i++) {
-      model.addImage(new File(""));
+      model.addImage(new File(Integer.toString(i)));
     }
 
     Dimension viewportPreferredSize = list.getPreferredSize();
@@ -169,6 +222,15 @@ public class ImageFileList extends JPanel {
     scrollPane = new JScrollPane(list, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
     scrollPane.getViewport().setPreferredSize(viewportPreferredSize);
 
+    //
+    // on every scroll (or resize) the visible icons are loaded first
+
+    scrollPane.getViewport().addChangeListener(new ChangeListener() {
+      public void stateChanged(ChangeEvent e) {
+        updateIconsPriority();
+      }
+    });
+
     //
     // the method is overridden so use "super" to nullify the border
 
@@ -218,6 +280,7 @@ public class ImageFileList extends JPanel {
 
     list.setBorder(BorderFactory.createEmptyBorder(0, 0, itemSpace, itemSpace));
     renderer.fireItemSpaceChanged();
+    updateFixedCellSize();
     model.fireContentsChanged();
   }
 
@@ -225,16 +288,133 @@ public class ImageFileList extends JPanel {
     return itemSpace;
   }
 
+  public void setIconPrefetchPages(int iconPrefetchPages) {
+    this.iconPrefetchPages = iconPrefetchPages;
+    updateIconsPriority();
+  }
+
+  public int getIconPrefetchPages() {
+    return iconPrefetchPages;
+  }
+
+  /**
+   * Sets the persistent store where the thumbnails are looked up before decoding the images (so the images are not
+   * decoded again after a restart).
+   * 
+   * @param store
+   *          the persistent store, or <code>null</code> to not use one
+   */
+  public void setIconsStore(final ImageFileListIconsStore store) {
+    icons.setStore(store);
+  }
+
+  public ImageFileListIconsStore getIconsStore() {
+    return icons.getStore();
+  }
+
   public void addImage(final File file) {
-    model.addImage(file);
-    icons.addToLoadingQueue(file);
+    addImages(Collections.singletonList(file));
   }
 
   public void addImages(final List<File> files) {
     model.addImages(files);
+    metadata.add(files);
     icons.addToLoadingQueue(files);
   }
 
+  /**
+   * Adds the images from the specified folder (not from the sub folders), see {@link #addFolder(File, int)}.
+   * 
+   * @param folder
+   *          the folder
+   * 
+   * @return the scanner of the folder (for example to cancel the scan)
+   */
+  public ImageFileListFolderScanner addFolder(final File folder) {
+    return addFolder(folder, 1);
+  }
+
+  /**
+   * Adds the images from the specified folder, scanned in background: the images are added in batches, as they are
+   * found. The scan is cancelled by {@link #removeAllImages()}.
+   * 
+   * @param folder
+   *          the folder
+   * @param maxDepth
+   *          the maximum depth (1 for the folder only, {@link Integer#MAX_VALUE} for all the sub folders)
+   * 
+   * @return the scanner of the folder (for example to cancel the scan)
+   */
+  public ImageFileListFolderScanner addFolder(final File folder, final int maxDepth) {
+
+    for (Iterator<ImageFileListFolderScanner> i = folderScanners.iterator(); i.hasNext();) {
+      if (i.next().isDone()) {
+        i.remove();
+      }
+    }
+
+    final ImageFileListFolderScanner scanner = new ImageFileListFolderScanner(this, folder, maxDepth, ImageFileFilter.getInstance());
+    folderScanners.add(scanner);
+
+    scanner.start();
+
+    return scanner;
+  }
+
+  /**
+   * Starts watching the specified folder: the new files are added, the deleted ones removed and the modified ones
+   * reloaded (see {@link ImageFileListFolderWatcher}). The folder is not scanned, use {@link #addFolder(File)} (after
+   * this method, to not miss any change). The watching is stopped by {@link #removeAllImages()}.
+   * 
+   * @param folder
+   *          the folder
+   * 
+   * @throws IOException
+   *           if the folder could not be watched
+   */
+  public void watchFolder(final File folder) throws IOException {
+
+    if (folderWatcher == null) {
+      folderWatcher = new ImageFileListFolderWatcher(this, ImageFileFilter.getInstance());
+    }
+
+    folderWatcher.watchFolder(folder);
+  }
+
+  public void unwatchFolder(final File folder) {
+    if (folderWatcher != null) {
+      folderWatcher.unwatchFolder(folder);
+    }
+  }
+
+  public List<File> getWatchedFolders() {
+    if (folderWatcher == null) {
+      return Collections.emptyList();
+    } else {
+      return folderWatcher.getWatchedFolders();
+    }
+  }
+
+  public boolean containsImage(final File file) {
+    return model.contains(file);
+  }
+
+  /**
+   * Loads again the icon and the metadata of the specified image, for example after the file was modified.
+   * 
+   * @param file
+   *          the image file
+   */
+  public void reloadImage(final File file) {
+
+    if (!model.contains(file)) {
+      return;
+    }
+
+    icons.reload(file);
+    metadata.invalidate(file);
+  }
+
   public File getSelectedImage() {
     return list.getSelectedValue();
   }
@@ -249,29 +429,138 @@ public class ImageFileList extends JPanel {
 
   public void removeImage(final File file) {
     model.removeImage(file);
+    metadata.remove(Collections.singletonList(file));
+    icons.cancel(file);
   }
 
   public void removeImages(final List<File> files) {
+
+    //
+    // a bulk removal does not shift the selection, so restore it
+
+    final List<File> selectedImages = getSelectedImages();
+
     model.removeImages(files);
+    metadata.remove(files);
+    icons.cancel(files);
+
+    setSelectedImages(selectedImages);
   }
 
   public void removeSelectedImages() {
     int index = list.getSelectedIndex();
-    model.removeImages(getSelectedImages());
+    removeImages(getSelectedImages());
     if (index >= model.getSize()) {
       index = model.getSize() - 1;
     }
     list.setSelectedIndex(index);
   }
 
+  /**
+   * Removes all the images, cancels the scans of the folders and stops watching the folders (or the watcher would add
+   * the files back as they change).
+   */
   public void removeAllImages() {
+
+    for (ImageFileListFolderScanner scanner : folderScanners) {
+      scanner.cancel();
+    }
+
+    folderScanners.clear();
+
+    if (folderWatcher != null) {
+
+      try {
+        folderWatcher.close();
+      } catch (IOException e) {
+        logger.warn("failed to close the folder watcher", e);
+      }
+
+      folderWatcher = null;
+    }
+
     model.removeAllImages();
+    metadata.removeAll();
+    icons.cancelAll();
+  }
+
+  /**
+   * Stops the background work of the list (the scans of the folders, the watching of the folders, the loading of the
+   * icons), to be called when the list is no longer used.
+   */
+  public void dispose() {
+    removeAllImages();
   }
 
   public int getImagesCount() {
     return model.size();
   }
 
+  /**
+   * Returns the metadata of the images (extracted in background), for example to be used by a filter.
+   * 
+   * @return the metadata of the images
+   */
+  public ImageFileListMetadata getImagesMetadata() {
+    return metadata;
+  }
+
+  /**
+   * Sorts the images (in background, over their metadata). The images with unknown values are displayed last, and the
+   * sort is applied again when the extraction of the metadata is done.
+   * 
+   * @param key
+   *          the key to sort by, or <code>null</code> to display the images in the order they were added
+   * @param ascending
+   *          the direction of the sort
+   */
+  public void sortImages(final ImageFileListSorter.Key key, final boolean ascending) {
+    this.imagesSortKey = key;
+    this.imagesSortAscending = ascending;
+    sorter.sort(imagesSortKey, imagesSortAscending, imagesFilter);
+  }
+
+  public ImageFileListSorter.Key getImagesSortKey() {
+    return imagesSortKey;
+  }
+
+  public boolean isImagesSortAscending() {
+    return imagesSortAscending;
+  }
+
+  /**
+   * Filters the images (in background, over their metadata). The images without metadata are displayed until it is
+   * extracted, when the filter is applied again.
+   * 
+   * @param filter
+   *          the filter, or <code>null</code> to display all the images
+   */
+  public void setImagesFilter(final ImageFileListFilter filter) {
+    this.imagesFilter = filter;
+    sorter.sort(imagesSortKey, imagesSortAscending, imagesFilter);
+  }
+
+  public ImageFileListFilter getImagesFilter() {
+    return imagesFilter;
+  }
+
+  /**
+   * Sets the view of the images (the indexes, in the order they were added, of the images to be displayed), keeping
+   * the selected images selected. Used by {@link ImageFileListSorter}.
+   * 
+   * @param view
+   *          the indexes of the images to be displayed, or <code>null</code> for all the images, in order
+   */
+  public void setView(final int[] view) {
+
+    final List<File> selectedImages = getSelectedImages();
+
+    model.setView(view);
+
+    setSelectedImages(selectedImages);
+    updateIconsPriority();
+  }
+
   public final void selectPrevImage() {
 
     int index = list.getSelectedIndex();
@@ -320,6 +609,36 @@ public class ImageFileList extends JPanel {
     model.fireContentsChanged();
   }
 
+  /**
+   * Notifies (from any thread) that the icon of the specified file was loaded. The notifications are coalesced and
+   * only the affected cells are repainted.
+   * 
+   * @param file
+   *          the file
+   */
+  public void fireIconLoaded(final File file) {
+    iconsNotifier.iconLoaded(file);
+  }
+
+  /**
+   * Returns how many icons were loaded, see {@link #getIconsEventsFired()}.
+   * 
+   * @return the number of loaded icons
+   */
+  public long getIconsLoaded() {
+    return iconsNotifier.getIconsLoaded();
+  }
+
+  /**
+   * Returns how many "contents changed" events were fired for the loaded icons (less or equal to
+   * {@link #getIconsLoaded()}, the smaller the better).
+   * 
+   * @return the number of fired events
+   */
+  public long getIconsEventsFired() {
+    return iconsNotifier.getEventsFired();
+  }
+
   @Override
   public void setBorder(Border border) {
     if (isInitializationDone) {
@@ -394,10 +713,95 @@ public class ImageFileList extends JPanel {
     list.removeMouseWheelListener(listener);
   }
 
+  //
+  // --- protected methods
+  //
+
+  /**
+   * Creates the icons loader used by this list. Override to configure the loader (for example the number of workers
+   * or the factory of the worker threads).
+   * <p>
+   * Called from the constructor, so do not rely on the state of the subclass.
+   * 
+   * @return the icons loader for this list
+   */
+  protected ImageFileListIcons createIcons() {
+    return new ImageFileListIcons(this);
+  }
+
   //
   // --- private methods
   //
 
+  /**
+   * Selects the specified images (the ones still displayed), by their new indexes.
+   */
+  private void setSelectedImages(final List<File> images) {
+
+    if (images.isEmpty()) {
+      return;
+    }
+
+    final int[] selectedIndexes = new int[images.size()];
+    int selectedCount = 0;
+
+    for (File file : images) {
+
+      final int index = model.indexOf(file);
+
+      if (index != -1) {
+        selectedIndexes[selectedCount++] = index;
+      }
+    }
+
+    list.setSelectedIndices(Arrays.copyOf(selectedIndexes, selectedCount));
+  }
+
+  private void updateFixedCellSize() {
+    final Dimension cellSize = renderer.getPreferredSize();
+    list.setFixedCellWidth(cellSize.width);
+    list.setFixedCellHeight(cellSize.height);
+  }
+
+  /**
+   * Tells the icons loader which files to load first: the visible ones (queued again if their icons were evicted from
+   * the cache), then the ones from the prefetch band (nearest first, below and above the visible ones), the rest remain
+   * in the order they were added.
+   */
+  private void updateIconsPriority() {
+
+    final int firstVisibleIndex = list.getFirstVisibleIndex();
+    final int lastVisibleIndex = list.getLastVisibleIndex();
+
+    if (firstVisibleIndex == -1) {
+      return;
+    }
+
+    final int size = model.getSize();
+    final int prefetch = (lastVisibleIndex - firstVisibleIndex + 1) * iconPrefetchPages;
+
+    final List<File> files = new ArrayList<>(lastVisibleIndex - firstVisibleIndex + 1 + prefetch * 2);
+
+    for (int i = firstVisibleIndex; i <= lastVisibleIndex && i < size; i++) {
+      files.add(model.getElementAt(i));
+    }
+
+    icons.addMissingToLoadingQueue(files);
+
+    for (int i = 1; i <= prefetch; i++) {
+
+      if (lastVisibleIndex + i < size) {
+        files.add(model.getElementAt(lastVisibleIndex + i));
+      }
+
+      if (firstVisibleIndex - i >= 0) {
+        files.add(model.getElementAt(firstVisibleIndex - i));
+      }
+    }
+
+    icons.setPriorityFiles(files);
+  }
+
   private void setIconStyle(final int iconSize, final boolean iconShadow) {
 
     synchronized (ImageFileList.this) {
@@ -405,12 +809,12 @@ public class ImageFileList extends JPanel {
       this.iconSize = iconSize;
       this.iconShadow = iconShadow;
 
-      icons.clear();
-
       renderer.fireIconStyleChanged();
+      updateFixedCellSize();
       model.fireContentsChanged();
 
-      icons.addToLoadingQueue(getImages());
+      icons.fireIconStyleChanged(getImages());
+      updateIconsPriority();
     }
   }
 
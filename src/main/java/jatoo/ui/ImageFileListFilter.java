@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+/**
+ * A filter for the files from {@link ImageFileList} component, over their metadata (see
+ * {@link ImageFileList#setImagesFilter(ImageFileListFilter)}).
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public interface ImageFileListFilter {
+
+  /**
+   * Tests whether the file from the specified slot should be displayed. Called from a background thread, so it must
+   * not touch the UI.
+   * 
+   * @param metadata
+   *          the metadata of the files
+   * @param slot
+   *          the slot of the file (see {@link ImageFileListMetadata#getSlot(java.io.File)})
+   * 
+   * @return <code>true</code> if the file should be displayed
+   */
+  boolean accept(ImageFileListMetadata metadata, int slot);
+
+}
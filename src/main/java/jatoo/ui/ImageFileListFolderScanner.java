@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Scans a folder (in background) and adds the images to an {@link ImageFileList} component as they are found.
+ * <p>
+ * The found files are added in batches, on the event dispatch thread: a batch is flushed when it is full or, by a
+ * timer, at most a delay after its first file was found (even if the scan is stuck meanwhile, on a slow, network
+ * mounted, folder), so the first images are displayed almost immediately without flooding the UI with one event per
+ * file.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageFileListFolderScanner {
+
+  private final Log logger = LogFactory.getLog(getClass());
+
+  /** The default maximum number of files in a batch. */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  /** The default maximum time (in milliseconds) the found files wait before being added. */
+  public static final int DEFAULT_BATCH_DELAY = 100;
+
+  private final ImageFileList list;
+  private final File folder;
+  private final int maxDepth;
+  private final FileFilter filter;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private int batchDelay = DEFAULT_BATCH_DELAY;
+
+  private volatile boolean cancelled;
+  private volatile boolean done;
+
+  private volatile int filesFound;
+
+  /** The found files not yet added (guarded by itself). */
+  private final List<File> batch = new ArrayList<>();
+
+  /** The time of the last flush (0 so the first file found is added immediately). */
+  private long lastFlushTime;
+
+  private final Timer timer;
+  private boolean timerScheduled;
+
+  /**
+   * Creates the scanner (use {@link #start()} to start it).
+   * 
+   * @param list
+   *          the list the images are added to
+   * @param folder
+   *          the folder to be scanned
+   * @param maxDepth
+   *          the maximum depth (1 for the files in the folder only, {@link Integer#MAX_VALUE} for all the sub folders)
+   * @param filter
+   *          the filter for the files (usually an instance of {@link jatoo.image.ImageFileFilter})
+   */
+  public ImageFileListFolderScanner(final ImageFileList list, final File folder, final int maxDepth, final FileFilter filter) {
+
+    if (maxDepth < 1) {
+      throw new IllegalArgumentException("the maximum depth must be positive: " + maxDepth);
+    }
+
+    this.list = list;
+    this.folder = folder;
+    this.maxDepth = maxDepth;
+    this.filter = filter;
+
+    timer = new Timer(batchDelay, new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        flush();
+      }
+    });
+    timer.setRepeats(false);
+  }
+
+  public void setBatchSize(final int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchDelay(final int batchDelay) {
+    this.batchDelay = batchDelay;
+    timer.setInitialDelay(batchDelay);
+  }
+
+  public int getBatchDelay() {
+    return batchDelay;
+  }
+
+  public File getFolder() {
+    return folder;
+  }
+
+  /**
+   * Starts the scan, on a new (daemon) thread.
+   */
+  public void start() {
+
+    final Thread thread = new Thread(new Runnable() {
+      public void run() {
+        scan();
+      }
+    }, getClass().getSimpleName() + " - " + folder.getName());
+
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stops the scan. The files found but not yet added are dropped.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Tells whether the scan is done (all the found files were added, or the scan was cancelled).
+   * 
+   * @return <code>true</code> if the scan is done
+   */
+  public boolean isDone() {
+    return done;
+  }
+
+  /**
+   * Returns the number of files found so far.
+   * 
+   * @return the number of found files
+   */
+  public int getFilesFound() {
+    return filesFound;
+  }
+
+  private void scan() {
+
+    try {
+
+      Files.walkFileTree(folder.toPath(), EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<Path>() {
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+          return cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path path, final BasicFileAttributes attrs) throws IOException {
+
+          if (cancelled) {
+            return FileVisitResult.TERMINATE;
+          }
+
+          if (attrs.isRegularFile()) {
+
+            final File file = path.toFile();
+
+            if (filter == null || filter.accept(file)) {
+
+              filesFound++;
+
+              add(file);
+            }
+          }
+
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path path, final IOException e) throws IOException {
+          logger.debug("the file could not be visited: " + path, e);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+
+    catch (IOException e) {
+      logger.warn("the folder could not be scanned: " + folder, e);
+    }
+
+    finally {
+
+      flush();
+
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          done = true;
+        }
+      });
+    }
+  }
+
+  /**
+   * Adds the file to the batch, then flushes the batch if it is full (or if the previous flush is older than the
+   * delay), or schedules the timer to flush it later.
+   */
+  private void add(final File file) {
+
+    synchronized (batch) {
+
+      batch.add(file);
+
+      if (batch.size() < batchSize && System.currentTimeMillis() - lastFlushTime < batchDelay) {
+
+        if (timerScheduled) {
+          return;
+        }
+
+        timerScheduled = true;
+
+        SwingUtilities.invokeLater(new Runnable() {
+          public void run() {
+            timer.restart();
+          }
+        });
+
+        return;
+      }
+    }
+
+    flush();
+  }
+
+  /**
+   * Adds (on the event dispatch thread) the files from the batch, then clears it. Called from the scanning thread and
+   * by the timer.
+   */
+  private void flush() {
+
+    synchronized (batch) {
+
+      timerScheduled = false;
+      lastFlushTime = System.currentTimeMillis();
+
+      if (batch.isEmpty()) {
+        return;
+      }
+
+      final List<File> files = new ArrayList<>(batch);
+      batch.clear();
+
+      //
+      // (still locked, so the batches are added in order)
+
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          if (!cancelled) {
+            list.addImages(files);
+          }
+        }
+      });
+    }
+  }
+
+}
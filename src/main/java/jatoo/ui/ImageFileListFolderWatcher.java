@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Watches folders (see {@link WatchService}) and reflects the changes in an {@link ImageFileList} component: the new
+ * files are added, the deleted ones removed and the modified ones get their icons (and metadata) loaded again.
+ * <p>
+ * A file is processed only after it settled: no events for it during the settle delay and the same length as at its
+ * last event, so the files still being written (for example by a camera) are not read half done. Only the files from
+ * the watched folders are tracked, not from their sub folders. If the events overflow, the folder is scanned again (the
+ * files deleted meanwhile are not detected).
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageFileListFolderWatcher implements Closeable {
+
+  private final Log logger = LogFactory.getLog(getClass());
+
+  /** The default time (in milliseconds) a file must be left alone before being processed. */
+  public static final int DEFAULT_SETTLE_DELAY = 500;
+
+  private final ImageFileList list;
+  private final FileFilter filter;
+
+  private final WatchService watchService;
+
+  private final Map<WatchKey, Path> folders = new HashMap<>();
+
+  /** The files with events, not yet settled (in the order of their last event). */
+  private final LinkedHashMap<File, long[]> pendingFiles = new LinkedHashMap<>();
+
+  private volatile int settleDelay = DEFAULT_SETTLE_DELAY;
+
+  /** Set by {@link #close()}, the changes already sent to the list (but not yet applied) are dropped. */
+  private volatile boolean closed;
+
+  /**
+   * Creates the watcher (and starts its thread).
+   * 
+   * @param list
+   *          the list the changes are reflected in
+   * @param filter
+   *          the filter for the files (usually an instance of {@link jatoo.image.ImageFileFilter})
+   * 
+   * @throws IOException
+   *           if the watch service could not be created
+   */
+  public ImageFileListFolderWatcher(final ImageFileList list, final FileFilter filter) throws IOException {
+
+    this.list = list;
+    this.filter = filter;
+
+    watchService = FileSystems.getDefault().newWatchService();
+
+    final Thread thread = new Thread(new Runnable() {
+      public void run() {
+        watch();
+      }
+    }, getClass().getSimpleName());
+
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public void setSettleDelay(final int settleDelay) {
+    this.settleDelay = settleDelay;
+  }
+
+  public int getSettleDelay() {
+    return settleDelay;
+  }
+
+  /**
+   * Starts watching the specified folder. To not miss any change, the folder should be watched before being scanned.
+   * 
+   * @param folder
+   *          the folder
+   * 
+   * @throws IOException
+   *           if the folder could not be watched
+   */
+  public void watchFolder(final File folder) throws IOException {
+
+    final Path path = folder.toPath();
+    final WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+    synchronized (folders) {
+      folders.put(key, path);
+    }
+  }
+
+  /**
+   * Stops watching the specified folder.
+   * 
+   * @param folder
+   *          the folder
+   */
+  public void unwatchFolder(final File folder) {
+
+    final Path path = folder.toPath();
+
+    synchronized (folders) {
+      for (Iterator<Map.Entry<WatchKey, Path>> i = folders.entrySet().iterator(); i.hasNext();) {
+
+        final Map.Entry<WatchKey, Path> entry = i.next();
+
+        if (entry.getValue().equals(path)) {
+          entry.getKey().cancel();
+          i.remove();
+        }
+      }
+    }
+  }
+
+  public boolean isWatchingFolder(final File folder) {
+    synchronized (folders) {
+      return folders.containsValue(folder.toPath());
+    }
+  }
+
+  public List<File> getWatchedFolders() {
+    synchronized (folders) {
+
+      final List<File> watchedFolders = new ArrayList<>(folders.size());
+
+      for (Path path : folders.values()) {
+        watchedFolders.add(path.toFile());
+      }
+
+      return watchedFolders;
+    }
+  }
+
+  /**
+   * Stops watching all the folders (and the thread).
+   */
+  @Override
+  public void close() throws IOException {
+
+    closed = true;
+
+    synchronized (folders) {
+      folders.clear();
+    }
+
+    watchService.close();
+  }
+
+  /**
+   * The loop of the thread.
+   */
+  private void watch() {
+
+    try {
+
+      while (true) {
+
+        //
+        // wait for events, but not longer than the first pending file needs to settle
+
+        final WatchKey key;
+
+        if (pendingFiles.isEmpty()) {
+          key = watchService.take();
+        } else {
+          key = watchService.poll(Math.max(1, pendingFiles.values().iterator().next()[0] + settleDelay - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+
+        if (key != null) {
+
+          final Path folder;
+
+          synchronized (folders) {
+            folder = folders.get(key);
+          }
+
+          for (WatchEvent<?> event : key.pollEvents()) {
+
+            if (folder == null) {
+              continue;
+            }
+
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              rescan(folder.toFile());
+            }
+
+            else {
+
+              final File file = folder.resolve((Path) event.context()).toFile();
+
+              pendingFiles.remove(file);
+              pendingFiles.put(file, new long[] { System.currentTimeMillis(), file.length() });
+            }
+          }
+
+          if (!key.reset()) {
+            synchronized (folders) {
+              folders.remove(key);
+            }
+          }
+        }
+
+        processSettledFiles();
+      }
+    }
+
+    catch (InterruptedException | ClosedWatchServiceException e) {
+      logger.debug("the watcher was closed");
+    }
+  }
+
+  /**
+   * Sends to the list the changes of the settled files. The file system is accessed here (not on the event dispatch
+   * thread).
+   */
+  private void processSettledFiles() {
+
+    final long now = System.currentTimeMillis();
+
+    final List<File> existingFiles = new ArrayList<>();
+    final List<File> deletedFiles = new ArrayList<>();
+
+    final List<File> notSettledFiles = new ArrayList<>();
+
+    for (Iterator<Map.Entry<File, long[]>> i = pendingFiles.entrySet().iterator(); i.hasNext();) {
+
+      final Map.Entry<File, long[]> entry = i.next();
+
+      if (entry.getValue()[0] + settleDelay > now) {
+        break;
+      }
+
+      i.remove();
+
+      final File file = entry.getKey();
+
+      if (!file.exists()) {
+        deletedFiles.add(file);
+      }
+
+      else if (file.length() != entry.getValue()[1]) {
+        notSettledFiles.add(file);
+      }
+
+      else if (file.isFile() && (filter == null || filter.accept(file))) {
+        existingFiles.add(file);
+      }
+    }
+
+    //
+    // the files still growing wait one more delay
+
+    for (File file : notSettledFiles) {
+      pendingFiles.put(file, new long[] { now, file.length() });
+    }
+
+    if (existingFiles.isEmpty() && deletedFiles.isEmpty()) {
+      return;
+    }
+
+    SwingUtilities.invokeLater(new Runnable() {
+      public void run() {
+
+        if (closed) {
+          return;
+        }
+
+        final List<File> newFiles = new ArrayList<>();
+
+        for (File file : existingFiles) {
+          if (list.containsImage(file)) {
+            list.reloadImage(file);
+          } else {
+            newFiles.add(file);
+          }
+        }
+
+        if (!newFiles.isEmpty()) {
+          list.addImages(newFiles);
+        }
+
+        if (!deletedFiles.isEmpty()) {
+          list.removeImages(deletedFiles);
+        }
+      }
+    });
+  }
+
+  private void rescan(final File folder) {
+
+    logger.info("the events overflowed, the folder is scanned again: " + folder);
+
+    SwingUtilities.invokeLater(new Runnable() {
+      public void run() {
+        if (!closed) {
+          list.addFolder(folder);
+        }
+      }
+    });
+  }
+
+}
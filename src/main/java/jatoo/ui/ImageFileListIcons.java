@@ -18,131 +18,593 @@ package jatoo.ui;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import jatoo.image.ImageFileFilter;
 import jatoo.image.ImageThumbnails;
 import jatoo.image.ImageUtils;
 
 /**
  * The icons loader for {@link ImageFileList} component.
+ * <p>
+ * The icons are decoded and scaled by a pool of worker threads (by default one for each available processor). The
+ * pending files are kept as simple references, the memory heavy work (the decoding) is bounded by the number of
+ * workers: a worker takes a new file only after the previous one was done.
+ * <p>
+ * The order of loading can be changed with {@link #setPriorityFiles(List)}: the priority files (usually the ones
+ * visible on the screen) are loaded first, the rest in the order they were added.
+ * <p>
+ * The loaded icons are kept in a bounded cache (see {@link ImageFileListIconsCache}), the icons evicted from the
+ * cache are loaded again when they are visible again (see {@link #addMissingToLoadingQueue(Collection)}).
+ * <p>
+ * Optionally, a persistent store (see {@link ImageFileListIconsStore}) is consulted before decoding the images, and
+ * updated after.
+ * <p>
+ * The images are decoded through the fast path (see {@link ImageFileListIconsReader}) when possible: the embedded
+ * thumbnail or a subsampled decoding, the full image is decoded only when needed.
+ * <p>
+ * A file is loaded only once: adding a file already waiting (or being loaded) has no effect. The loading can be
+ * cancelled (see {@link #cancel(Collection)}), for the waiting files and for the ones being loaded (the result is
+ * dropped and the remaining work, if any, skipped).
  * 
  * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
- * @version 1.0-SNAPSHOT, June 15, 2017
+ * @version 2.0, October 17, 2026
  */
-public class ImageFileListIcons extends Thread {
+public class ImageFileListIcons {
+
+  private final Log logger = LogFactory.getLog(getClass());
 
   public static final ImageIcon ICON_ERROR = new ImageIcon();
 
-  private final ImageThumbnails thumbnails = new ImageThumbnails();
+  /** The default number of workers, one for each available processor. */
+  public static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
+
+  private final LinkedHashSet<File> files = new LinkedHashSet<>();
+  private final LinkedList<File> priorityFiles = new LinkedList<>();
+  private final Map<File, Task> loadingFiles = new HashMap<>();
 
-  private final LinkedList<File> files = new LinkedList<>();
-  private final Map<File, Icon> icons = new HashMap<>();
+  private final ImageFileListIconsCache icons = new ImageFileListIconsCache();
 
   private final ImageFileList list;
 
-  private boolean skipCycle;
+  private volatile ImageFileListIconsStore store;
+
+  private final ImageFileListIconsReader reader = new ImageFileListIconsReader();
+
+  private final Thread[] workers;
+
+  /**
+   * Incremented on every {@link #clear()}, the icons loaded for an older generation are dropped.
+   */
+  private volatile int generation;
 
   public ImageFileListIcons(final ImageFileList list) {
+    this(list, DEFAULT_WORKERS);
+  }
+
+  public ImageFileListIcons(final ImageFileList list, final int workers) {
+    this(list, workers, new WorkerThreadFactory());
+  }
+
+  /**
+   * Creates the icons loader with the specified number of workers, created by the specified factory (for example, on
+   * Java 21+, a virtual threads factory can be provided).
+   * 
+   * @param list
+   *          the list the icons are loaded for
+   * @param workers
+   *          the number of worker threads
+   * @param threadFactory
+   *          the factory used to create the worker threads
+   */
+  public ImageFileListIcons(final ImageFileList list, final int workers, final ThreadFactory threadFactory) {
+
+    if (workers < 1) {
+      throw new IllegalArgumentException("the number of workers must be positive: " + workers);
+    }
+
     this.list = list;
-    start();
+
+    this.workers = new Thread[workers];
+
+    for (int i = 0; i < workers; i++) {
+      this.workers[i] = threadFactory.newThread(new Worker());
+      this.workers[i].start();
+    }
+  }
+
+  public int getWorkersCount() {
+    return workers.length;
   }
 
   public void addToLoadingQueue(final File file) {
     synchronized (this.files) {
-      this.files.add(file);
-      this.files.notify();
+      if (addToLoadingQueueImpl(file)) {
+        this.files.notify();
+      }
     }
   }
 
-  public void addToLoadingQueue(final List<File> files) {
+  public void addToLoadingQueue(final Collection<File> files) {
     synchronized (this.files) {
-      this.files.addAll(files);
-      this.files.notify();
+
+      boolean added = false;
+
+      for (File file : files) {
+        added |= addToLoadingQueueImpl(file);
+      }
+
+      if (added) {
+        this.files.notifyAll();
+      }
     }
   }
 
-  public Icon get(File file) {
-    synchronized (this.icons) {
-      return icons.get(file);
+  /**
+   * Cancels the loading of the specified file: removed from the queue if waiting, dropped if being loaded.
+   * 
+   * @param file
+   *          the file
+   */
+  public void cancel(final File file) {
+    synchronized (this.files) {
+      cancelImpl(file);
     }
   }
 
-  public void clear() {
+  /**
+   * Cancels the loading of the specified files: removed from the queue if waiting, dropped if being loaded.
+   * 
+   * @param files
+   *          the files
+   */
+  public void cancel(final Collection<File> files) {
+    synchronized (this.files) {
+      for (File file : files) {
+        cancelImpl(file);
+      }
+    }
+  }
+
+  /**
+   * Loads again (with priority) the icon of the specified file, for example after the file was modified: the loading in
+   * progress (if any) is cancelled and the icon is removed from the cache and from the store.
+   * 
+   * @param file
+   *          the file
+   */
+  public void reload(final File file) {
+
+    icons.remove(file);
+
+    final ImageFileListIconsStore store = this.store;
+
+    if (store != null) {
+      store.remove(file, list.getIconSize());
+    }
+
+    synchronized (this.files) {
 
-    this.skipCycle = true;
+      cancelImpl(file);
 
-    synchronized (this.icons) {
-      this.icons.clear();
+      if (addToLoadingQueueImpl(file)) {
+        priorityFiles.addFirst(file);
+        files.notify();
+      }
     }
+  }
 
+  /**
+   * Cancels the loading of all the files.
+   */
+  public void cancelAll() {
     synchronized (this.files) {
+
       this.files.clear();
-      this.files.notify();
+      this.priorityFiles.clear();
+
+      ImageMetrics.getInstance().setIconsQueueSize(0);
+
+      for (Task task : loadingFiles.values()) {
+        task.cancelled = true;
+      }
     }
   }
 
-  public void run() {
+  /**
+   * Must be called after the size (or the shadow) of the icons was changed: cancels the loading of the icons with the
+   * old style and adds to the queue the specified files without an icon (in the cache) for the new style.
+   * 
+   * @param files
+   *          the files that need icons with the new style
+   */
+  public void fireIconStyleChanged(final Collection<File> files) {
 
-    while (true) {
+    final int iconSize = list.getIconSize();
+    final boolean iconShadow = list.isIconShadow();
 
-      skipCycle = false;
+    synchronized (this.files) {
 
-      File file;
+      for (Task task : loadingFiles.values()) {
+        if (task.iconSize != iconSize || task.iconShadow != iconShadow) {
+          task.cancelled = true;
+        }
+      }
+
+      boolean added = false;
+
+      for (File file : files) {
+        if (!icons.contains(file, iconSize, iconShadow)) {
+          added |= addToLoadingQueueImpl(file);
+        }
+      }
+
+      if (added) {
+        this.files.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Changes the order of loading: the specified files (if they are still waiting to be loaded) will be loaded first, in
+   * the specified order. Replaces the previous priority files.
+   * 
+   * @param files
+   *          the files to be loaded first
+   */
+  public void setPriorityFiles(final List<File> files) {
+    synchronized (this.files) {
+      this.priorityFiles.clear();
+      this.priorityFiles.addAll(files);
+    }
+  }
+
+  public int getLoadingQueueSize() {
+    synchronized (this.files) {
+      return files.size();
+    }
+  }
+
+  /**
+   * Sets the persistent store where the thumbnails are looked up before decoding the images.
+   * 
+   * @param store
+   *          the persistent store, or <code>null</code> to not use one
+   */
+  public void setStore(final ImageFileListIconsStore store) {
+    this.store = store;
+  }
+
+  public ImageFileListIconsStore getStore() {
+    return store;
+  }
+
+  public ImageFileListIconsReader getReader() {
+    return reader;
+  }
+
+  public ImageFileListIconsCache getCache() {
+    return icons;
+  }
 
-      synchronized (files) {
+  /**
+   * Returns the icon for the specified file, if loaded. Nothing is queued for a missing icon (this is called for every
+   * painted cell), see {@link #addMissingToLoadingQueue(Collection)} for the evicted icons.
+   * 
+   * @param file
+   *          the file
+   * @return the icon for the file, or <code>null</code> if the icon is not (yet) loaded
+   */
+  public Icon get(File file) {
+    return icons.get(file, list.getIconSize(), list.isIconShadow());
+  }
 
-        if (files.isEmpty()) {
+  /**
+   * Adds to the loading queue the specified files without an icon in the cache (for example evicted), unless already
+   * waiting or being loaded. Usually called with the visible files, before {@link #setPriorityFiles(List)}.
+   * 
+   * @param files
+   *          the files
+   */
+  public void addMissingToLoadingQueue(final Collection<File> files) {
 
-          try {
-            files.wait();
-          } catch (InterruptedException e) {}
+    final int iconSize = list.getIconSize();
+    final boolean iconShadow = list.isIconShadow();
 
-          continue;
+    synchronized (this.files) {
+
+      boolean added = false;
+
+      for (File file : files) {
+        if (!icons.contains(file, iconSize, iconShadow)) {
+          added |= addToLoadingQueueImpl(file);
         }
+      }
 
-        file = files.removeFirst();
+      if (added) {
+        this.files.notifyAll();
       }
+    }
+  }
 
-      final ImageIcon icon;
+  public void clear() {
 
-      if (ImageFileFilter.getInstance().accept(file)) {
+    synchronized (this.files) {
 
-        BufferedImage image = thumbnails.get(file, list.getIconSize(), list.getIconSize());
+      this.generation++;
 
-        if (image != null) {
+      //
+      // the files being loaded are cancelled too, or they could not be added again until their (dropped) icons are
+      // loaded
 
-          if (list.isIconShadow()) {
-            image = ImageUtils.addShadow(image);
-          }
+      cancelAll();
+    }
+
+    icons.clear();
+  }
+
+  /**
+   * Adds the file to the queue, unless already there or being loaded (with the current style and not cancelled). Must
+   * be called while holding the lock on {@link #files}.
+   * 
+   * @return <code>true</code> if the file was added
+   */
+  private boolean addToLoadingQueueImpl(final File file) {
+
+    final Task task = loadingFiles.get(file);
+
+    if (task != null && !task.cancelled && task.iconSize == list.getIconSize() && task.iconShadow == list.isIconShadow()) {
+      return false;
+    }
 
-          icon = new ImageIcon(image);
+    final boolean added = files.add(file);
+
+    ImageMetrics.getInstance().setIconsQueueSize(files.size());
+
+    return added;
+  }
+
+  /**
+   * Must be called while holding the lock on {@link #files}.
+   */
+  private void cancelImpl(final File file) {
+
+    files.remove(file);
+
+    ImageMetrics.getInstance().setIconsQueueSize(files.size());
+
+    final Task task = loadingFiles.get(file);
+
+    if (task != null) {
+      task.cancelled = true;
+    }
+  }
+
+  private Icon createIcon(final ImageThumbnails thumbnails, final Task task) {
+
+    final File file = task.file;
+
+    if (ImageFileFilter.getInstance().accept(file)) {
+
+      BufferedImage image = getThumbnail(thumbnails, task);
+
+      if (task.cancelled) {
+        return null;
+      }
+
+      if (image != null) {
+
+        if (task.iconShadow) {
+          image = ImageUtils.addShadow(image);
         }
 
-        else {
-          icon = ImageFileListIcons.ICON_ERROR;
+        //
+        // converted once, here, in background (not on every paint)
+
+        return new ImageIcon(UIUtils.toCompatibleImage(image));
+      }
+    }
+
+    return ImageFileListIcons.ICON_ERROR;
+  }
+
+  private BufferedImage getThumbnail(final ImageThumbnails thumbnails, final Task task) {
+
+    final File file = task.file;
+    final int iconSize = task.iconSize;
+
+    final ImageFileListIconsStore store = this.store;
+
+    if (store != null) {
+      try {
+        final BufferedImage image = store.get(file, iconSize);
+        if (image != null) {
+          return image;
         }
+      } catch (IOException e) {
+        logger.warn("the thumbnail could not be read from the store: " + file, e);
       }
+    }
+
+    BufferedImage image = null;
+
+    try {
+      image = reader.read(file, iconSize);
+    } catch (IOException | RuntimeException e) {
+      logger.debug("the fast path failed, the image will be fully decoded: " + file, e);
+    }
+
+    if (task.cancelled) {
+      return null;
+    }
 
-      else {
-        icon = ImageFileListIcons.ICON_ERROR;
+    if (image == null) {
+      image = thumbnails.get(file, iconSize, iconSize);
+    }
+
+    if (task.cancelled) {
+      return null;
+    }
+
+    if (store != null && image != null) {
+      try {
+        store.put(file, iconSize, image);
+      } catch (IOException e) {
+        logger.warn("the thumbnail could not be written to the store: " + file, e);
       }
+    }
 
-      if (skipCycle) {
-        continue;
+    return image;
+  }
+
+  /**
+   * Takes the next file to be loaded: the first priority file still waiting to be loaded, or else the first file from
+   * the queue. Must be called while holding the lock on {@link #files} and only if the queue is not empty.
+   */
+  private File takeNextFile() {
+
+    while (!priorityFiles.isEmpty()) {
+
+      final File file = priorityFiles.removeFirst();
+
+      if (files.remove(file)) {
+        return file;
       }
+    }
 
-      synchronized (icons) {
-        icons.put(file, icon);
+    final Iterator<File> iterator = files.iterator();
+    final File file = iterator.next();
+    iterator.remove();
+
+    return file;
+  }
+
+  /**
+   * A worker takes files from the loading queue, one at a time, and creates the icons.
+   */
+  private class Worker implements Runnable {
+
+    /** Each worker has his own thumbnails instance, not to share state between threads. */
+    private final ImageThumbnails thumbnails = new ImageThumbnails();
+
+    @Override
+    public void run() {
+
+      while (true) {
+
+        final Task task;
+        final int taskGeneration;
+
+        synchronized (files) {
+
+          if (files.isEmpty()) {
+
+            try {
+              files.wait();
+            } catch (InterruptedException e) {
+              return;
+            }
+
+            continue;
+          }
+
+          task = new Task(takeNextFile(), list.getIconSize(), list.isIconShadow());
+
+          ImageMetrics.getInstance().setIconsQueueSize(files.size());
+
+          taskGeneration = generation;
+
+          loadingFiles.put(task.file, task);
+        }
+
+        //
+        // a failing decoder (or an out of memory on a huge image) must not kill the worker,
+        // nor leave the file marked as being loaded (it would never be loaded again)
+
+        Icon icon = ICON_ERROR;
+        boolean loaded = false;
+
+        try {
+          icon = createIcon(thumbnails, task);
+        }
+
+        catch (Throwable e) {
+          logger.warn("the icon could not be created: " + task.file, e);
+        }
+
+        finally {
+
+          synchronized (files) {
+
+            if (loadingFiles.get(task.file) == task) {
+              loadingFiles.remove(task.file);
+            }
+
+            if (!task.cancelled && taskGeneration == generation) {
+              icons.put(task.file, task.iconSize, task.iconShadow, icon);
+              loaded = true;
+            }
+          }
+        }
+
+        if (loaded) {
+          list.fireIconLoaded(task.file);
+        }
       }
+    }
+  }
+
+  /**
+   * A file being loaded, with the style of the icon and the cancelled flag.
+   */
+  private static class Task {
+
+    private final File file;
+    private final int iconSize;
+    private final boolean iconShadow;
+
+    private volatile boolean cancelled;
+
+    private Task(final File file, final int iconSize, final boolean iconShadow) {
+      this.file = file;
+      this.iconSize = iconSize;
+      this.iconShadow = iconShadow;
+    }
+  }
+
+  /**
+   * The default factory for the workers: daemon threads, with lower priority than the UI.
+   */
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final int poolNumber = POOL_NUMBER.incrementAndGet();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+
+      final Thread thread = new Thread(runnable, ImageFileListIcons.class.getSimpleName() + "-" + poolNumber + "-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      thread.setPriority(Thread.NORM_PRIORITY - 1);
 
-      list.fireContentsChanged();
+      return thread;
     }
   }
 
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.Icon;
+
+/**
+ * A bounded cache for the icons of {@link ImageFileList} component.
+ * <p>
+ * The icons are kept in a LRU (least recently used) order, the limit is the total size of the pixels (in bytes), not
+ * the number of icons. Once the limit is exceeded the least recently used icons are evicted, optionally to a second
+ * level where they are kept through {@link SoftReference}s (until the garbage collector needs the memory).
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageFileListIconsCache {
+
+  /** The default limit: 64 MB of pixels. */
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  private final LinkedHashMap<Key, Icon> icons = new LinkedHashMap<>(256, 0.75f, true);
+
+  private final Map<Key, SoftIcon> softIcons = new HashMap<>();
+  private final ReferenceQueue<Icon> softIconsQueue = new ReferenceQueue<>();
+
+  private long maxBytes;
+  private long bytes;
+
+  private boolean softReferences;
+
+  private long hits;
+  private long softHits;
+  private long misses;
+  private long evictions;
+
+  public ImageFileListIconsCache() {
+    this(DEFAULT_MAX_BYTES, true);
+  }
+
+  /**
+   * Creates a cache.
+   * 
+   * @param maxBytes
+   *          the limit of the cache, as the total size of the pixels in bytes
+   * @param softReferences
+   *          <code>true</code> to keep the evicted icons through soft references
+   */
+  public ImageFileListIconsCache(final long maxBytes, final boolean softReferences) {
+    this.maxBytes = maxBytes;
+    this.softReferences = softReferences;
+  }
+
+  public synchronized Icon get(final File file, final int iconSize, final boolean iconShadow) {
+
+    final Key key = new Key(file, iconSize, iconShadow);
+
+    Icon icon = icons.get(key);
+
+    if (icon != null) {
+      hits++;
+      return icon;
+    }
+
+    icon = promoteSoftIcon(key);
+
+    if (icon != null) {
+      softHits++;
+      return icon;
+    }
+
+    misses++;
+    return null;
+  }
+
+  /**
+   * Checks if the icon is in the cache, without affecting the counters. An icon found only through its soft reference
+   * (still reachable) is promoted back to the first level, as by {@link #get(File, int, boolean)}, so it is not loaded
+   * again.
+   * 
+   * @param file
+   *          the file
+   * @param iconSize
+   *          the size of the icon
+   * @param iconShadow
+   *          the shadow flag of the icon
+   * 
+   * @return <code>true</code> if the icon is in the cache
+   */
+  public synchronized boolean contains(final File file, final int iconSize, final boolean iconShadow) {
+
+    final Key key = new Key(file, iconSize, iconShadow);
+
+    return icons.containsKey(key) || promoteSoftIcon(key) != null;
+  }
+
+  public synchronized void put(final File file, final int iconSize, final boolean iconShadow, final Icon icon) {
+    put(new Key(file, iconSize, iconShadow), icon);
+  }
+
+  public synchronized void remove(final File file) {
+
+    for (Iterator<Map.Entry<Key, Icon>> i = icons.entrySet().iterator(); i.hasNext();) {
+      final Map.Entry<Key, Icon> entry = i.next();
+      if (entry.getKey().file.equals(file)) {
+        bytes -= getBytes(entry.getValue());
+        i.remove();
+      }
+    }
+
+    for (Iterator<Key> i = softIcons.keySet().iterator(); i.hasNext();) {
+      if (i.next().file.equals(file)) {
+        i.remove();
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    icons.clear();
+    softIcons.clear();
+    bytes = 0;
+  }
+
+  public synchronized void setMaxBytes(final long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized void setSoftReferences(final boolean softReferences) {
+
+    this.softReferences = softReferences;
+
+    if (!softReferences) {
+      softIcons.clear();
+    }
+  }
+
+  public synchronized boolean isSoftReferences() {
+    return softReferences;
+  }
+
+  /**
+   * Returns the total size of the pixels (in bytes) of the icons kept by the first (strong) level.
+   * 
+   * @return the size of the cache, in bytes
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized int getSize() {
+    return icons.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getSoftHits() {
+    return softHits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return getClass().getSimpleName() + " [size=" + icons.size() + ", bytes=" + bytes + ", maxBytes=" + maxBytes + ", hits=" + hits + ", softHits=" + softHits + ", misses=" + misses + ", evictions=" + evictions + "]";
+  }
+
+  private void put(final Key key, final Icon icon) {
+
+    final Icon oldIcon = icons.put(key, icon);
+
+    if (oldIcon != null) {
+      bytes -= getBytes(oldIcon);
+    }
+
+    bytes += getBytes(icon);
+
+    evict();
+  }
+
+  /**
+   * Moves the icon, if still softly reachable, back to the first level.
+   * 
+   * @return the icon, or <code>null</code> if not kept (anymore) through a soft reference
+   */
+  private Icon promoteSoftIcon(final Key key) {
+
+    if (!softReferences) {
+      return null;
+    }
+
+    expungeSoftIcons();
+
+    final SoftIcon softIcon = softIcons.remove(key);
+
+    if (softIcon == null) {
+      return null;
+    }
+
+    final Icon icon = softIcon.get();
+
+    if (icon != null) {
+      put(key, icon);
+    }
+
+    return icon;
+  }
+
+  private void evict() {
+
+    for (Iterator<Map.Entry<Key, Icon>> i = icons.entrySet().iterator(); bytes > maxBytes && i.hasNext();) {
+
+      final Map.Entry<Key, Icon> entry = i.next();
+      i.remove();
+
+      bytes -= getBytes(entry.getValue());
+      evictions++;
+
+      if (softReferences) {
+        softIcons.put(entry.getKey(), new SoftIcon(entry.getKey(), entry.getValue(), softIconsQueue));
+      }
+    }
+  }
+
+  private void expungeSoftIcons() {
+
+    Reference<? extends Icon> reference;
+
+    while ((reference = softIconsQueue.poll()) != null) {
+
+      final SoftIcon softIcon = (SoftIcon) reference;
+
+      if (softIcons.get(softIcon.key) == softIcon) {
+        softIcons.remove(softIcon.key);
+      }
+    }
+  }
+
+  private static long getBytes(final Icon icon) {
+    return 4L * Math.max(0, icon.getIconWidth()) * Math.max(0, icon.getIconHeight());
+  }
+
+  /**
+   * The key of a cached icon: the file, the size and the shadow flag.
+   */
+  private static final class Key {
+
+    private final File file;
+    private final int iconSize;
+    private final boolean iconShadow;
+
+    private final int hashCode;
+
+    private Key(final File file, final int iconSize, final boolean iconShadow) {
+
+      this.file = file;
+      this.iconSize = iconSize;
+      this.iconShadow = iconShadow;
+
+      this.hashCode = (file.hashCode() * 31 + iconSize) * 31 + (iconShadow ? 1 : 0);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+      if (this == obj) {
+        return true;
+      }
+
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+
+      final Key key = (Key) obj;
+
+      return iconSize == key.iconSize && iconShadow == key.iconShadow && file.equals(key.file);
+    }
+  }
+
+  /**
+   * A soft referenced icon that remembers his key, to be removed from the map once cleared.
+   */
+  private static final class SoftIcon extends SoftReference<Icon> {
+
+    private final Key key;
+
+    private SoftIcon(final Key key, final Icon icon, final ReferenceQueue<Icon> queue) {
+      super(icon, queue);
+      this.key = key;
+    }
+  }
+
+}
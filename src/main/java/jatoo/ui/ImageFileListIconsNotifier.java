@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Notifies the {@link ImageFileListModel} about the loaded icons.
+ * <p>
+ * The icons loaded (from any thread) during a short window (a "frame") are coalesced and, on the event dispatch
+ * thread, only the ranges of the affected indexes are fired as changed.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageFileListIconsNotifier {
+
+  /** The default window (in milliseconds) the loaded icons are coalesced. */
+  public static final int DEFAULT_DELAY = 40;
+
+  private final ImageFileListModel model;
+
+  private final Set<File> files = new HashSet<>();
+
+  private final Timer timer;
+  private boolean timerScheduled;
+
+  private long iconsLoaded;
+  private long eventsFired;
+
+  public ImageFileListIconsNotifier(final ImageFileListModel model) {
+
+    this.model = model;
+
+    timer = new Timer(DEFAULT_DELAY, new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        fire();
+      }
+    });
+    timer.setRepeats(false);
+  }
+
+  public void setDelay(final int delay) {
+    timer.setInitialDelay(delay);
+  }
+
+  public int getDelay() {
+    return timer.getInitialDelay();
+  }
+
+  /**
+   * Must be called (from any thread) after the icon of the specified file was loaded.
+   * 
+   * @param file
+   *          the file
+   */
+  public void iconLoaded(final File file) {
+
+    synchronized (files) {
+
+      files.add(file);
+      iconsLoaded++;
+
+      if (timerScheduled) {
+        return;
+      }
+
+      timerScheduled = true;
+    }
+
+    SwingUtilities.invokeLater(new Runnable() {
+      public void run() {
+        timer.restart();
+      }
+    });
+  }
+
+  /**
+   * Returns how many icons were loaded (as notified through {@link #iconLoaded(File)}).
+   * 
+   * @return the number of loaded icons
+   */
+  public long getIconsLoaded() {
+    synchronized (files) {
+      return iconsLoaded;
+    }
+  }
+
+  /**
+   * Returns how many "contents changed" events were fired to the model.
+   * 
+   * @return the number of fired events
+   */
+  public long getEventsFired() {
+    synchronized (files) {
+      return eventsFired;
+    }
+  }
+
+  /**
+   * Fires the ranges of the indexes of the coalesced files. Called on the event dispatch thread.
+   */
+  private void fire() {
+
+    final File[] files;
+
+    synchronized (this.files) {
+      files = this.files.toArray(new File[this.files.size()]);
+      this.files.clear();
+      timerScheduled = false;
+    }
+
+    final int[] indexes = new int[files.length];
+    int count = 0;
+
+    for (File file : files) {
+
+      final int index = model.indexOf(file);
+
+      if (index != -1) {
+        indexes[count++] = index;
+      }
+    }
+
+    Arrays.sort(indexes, 0, count);
+
+    int events = 0;
+
+    for (int i = 0; i < count;) {
+
+      final int index0 = indexes[i];
+      int index1 = index0;
+
+      while (++i < count && indexes[i] <= index1 + 1) {
+        index1 = indexes[i];
+      }
+
+      model.fireContentsChanged(index0, index1);
+      events++;
+    }
+
+    synchronized (this.files) {
+      eventsFired += events;
+    }
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * The fast path for reading the icons of {@link ImageFileList} component, without decoding the full image:
+ * <ul>
+ * <li>the thumbnail embedded in the EXIF metadata (if big enough and with the same aspect ratio as the image)</li>
+ * <li>a subsampled decoding (every n-th pixel of every n-th line), when the icon is much smaller than the image</li>
+ * </ul>
+ * The result is scaled to fit the icon size.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageFileListIconsReader {
+
+  /** The maximum accepted difference between the aspect ratios of the embedded thumbnail and the image. */
+  private static final double ASPECT_RATIO_TOLERANCE = 0.02;
+
+  private boolean embeddedThumbnails = true;
+  private boolean subsampling = true;
+
+  public void setEmbeddedThumbnails(final boolean embeddedThumbnails) {
+    this.embeddedThumbnails = embeddedThumbnails;
+  }
+
+  public boolean isEmbeddedThumbnails() {
+    return embeddedThumbnails;
+  }
+
+  public void setSubsampling(final boolean subsampling) {
+    this.subsampling = subsampling;
+  }
+
+  public boolean isSubsampling() {
+    return subsampling;
+  }
+
+  /**
+   * Reads the icon for the specified file, using the fast path.
+   * 
+   * @param file
+   *          the image file
+   * @param iconSize
+   *          the size of the icon
+   * 
+   * @return the icon, or <code>null</code> if the fast path can not be used (and the full image must be decoded)
+   * 
+   * @throws IOException
+   *           if the file could not be read
+   */
+  public BufferedImage read(final File file, final int iconSize) throws IOException {
+
+    try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+
+      if (stream == null) {
+        return null;
+      }
+
+      final Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+
+      if (!readers.hasNext()) {
+        return null;
+      }
+
+      final ImageReader reader = readers.next();
+
+      try {
+
+        reader.setInput(stream, true, true);
+
+        final int imageWidth = reader.getWidth(0);
+        final int imageHeight = reader.getHeight(0);
+
+        //
+        // the embedded thumbnail
+
+        if (embeddedThumbnails && "jpeg".equalsIgnoreCase(reader.getFormatName())) {
+
+          final BufferedImage thumbnail = readEmbeddedThumbnail(file, imageWidth, imageHeight, iconSize);
+
+          if (thumbnail != null) {
+            return resizeToFit(thumbnail, iconSize);
+          }
+        }
+
+        //
+        // the subsampled decoding
+
+        if (subsampling) {
+
+          final int subsampling = Math.min(imageWidth / iconSize, imageHeight / iconSize);
+
+          if (subsampling >= 2) {
+
+            final ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+            return resizeToFit(reader.read(0, param), iconSize);
+          }
+        }
+
+        return null;
+      }
+
+      finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  private BufferedImage readEmbeddedThumbnail(final File file, final int imageWidth, final int imageHeight, final int iconSize) throws IOException {
+
+    final ImageExif exif = ImageExif.read(file);
+
+    if (exif == null || exif.getThumbnail() == null) {
+      return null;
+    }
+
+    final BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(exif.getThumbnail()));
+
+    if (thumbnail == null) {
+      return null;
+    }
+
+    //
+    // not smaller than the icon (no upscale)
+
+    if (thumbnail.getWidth() < iconSize && thumbnail.getHeight() < iconSize) {
+      return null;
+    }
+
+    //
+    // the same aspect ratio (no black bars, no rotated thumbnails)
+
+    final double imageRatio = (double) imageWidth / imageHeight;
+    final double thumbnailRatio = (double) thumbnail.getWidth() / thumbnail.getHeight();
+
+    if (Math.abs(imageRatio - thumbnailRatio) > imageRatio * ASPECT_RATIO_TOLERANCE) {
+      return null;
+    }
+
+    return thumbnail;
+  }
+
+  /**
+   * Scales the image (preserving the ratio) to fit the specified size, halving it step by step for a good quality.
+   */
+  private static BufferedImage resizeToFit(BufferedImage image, final int size) {
+
+    final double ratio = Math.min((double) size / image.getWidth(), (double) size / image.getHeight());
+
+    if (ratio >= 1) {
+      return image;
+    }
+
+    final int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+    final int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+    final int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+    int stepWidth = image.getWidth();
+    int stepHeight = image.getHeight();
+
+    do {
+
+      stepWidth = Math.max(width, stepWidth / 2);
+      stepHeight = Math.max(height, stepHeight / 2);
+
+      final BufferedImage step = new BufferedImage(stepWidth, stepHeight, type);
+
+      final Graphics2D g = step.createGraphics();
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.drawImage(image, 0, 0, stepWidth, stepHeight, null);
+      g.dispose();
+
+      image = step;
+
+    } while (stepWidth != width || stepHeight != height);
+
+    return image;
+  }
+
+}
@@ -0,0 +1,575 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A persistent (on disk) store for the icons of {@link ImageFileList} component, so the images do not have to be
+ * decoded again after a restart.
+ * <p>
+ * The store is made of two files:
+ * <ul>
+ * <li>a data file, where the thumbnails are appended (PNG encoded), one after the other</li>
+ * <li>an index file, memory mapped, an open addressing hash table keyed by path and size, where each entry remembers
+ * the last modified time and the length of the image file (to invalidate the thumbnail once the file changes) and the
+ * position of the thumbnail in the data file</li>
+ * </ul>
+ * The invalidated (or replaced) thumbnails remain in the data file, as dead bytes, until {@link #compact()} is called
+ * (automatically when the store is opened and the dead bytes exceed the live ones).
+ * <p>
+ * The store is shared by the icon workers: only the lookups in the index and the reads and appends of the bytes hold
+ * the lock, the PNG decoding and encoding do not. An index file that does not match its header (or the data file) is
+ * dropped, and the store starts empty.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageFileListIconsStore implements Closeable {
+
+  private static final String DATA_FILE_NAME = "icons.data";
+  private static final String INDEX_FILE_NAME = "icons.index";
+
+  private static final int MAGIC = 0x4A54494B;
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 64;
+  private static final int HEADER_MAGIC = 0;
+  private static final int HEADER_VERSION = 4;
+  private static final int HEADER_CAPACITY = 8;
+  private static final int HEADER_COUNT = 12;
+  private static final int HEADER_DELETED = 16;
+  private static final int HEADER_LIVE_BYTES = 24;
+  private static final int HEADER_DEAD_BYTES = 32;
+
+  private static final int SLOT_SIZE = 48;
+  private static final int SLOT_HASH = 0;
+  private static final int SLOT_LAST_MODIFIED = 8;
+  private static final int SLOT_LENGTH = 16;
+  private static final int SLOT_DATA_OFFSET = 24;
+  private static final int SLOT_DATA_LENGTH = 32;
+  private static final int SLOT_ICON_SIZE = 36;
+  private static final int SLOT_STATE = 40;
+
+  private static final int STATE_EMPTY = 0;
+  private static final int STATE_USED = 1;
+  private static final int STATE_DELETED = 2;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final File folder;
+
+  private RandomAccessFile dataFile;
+  private FileChannel dataChannel;
+
+  private final RandomAccessFile indexFile;
+  private final FileChannel indexChannel;
+  private MappedByteBuffer index;
+
+  private int capacity;
+
+  /**
+   * Opens (or creates) the store from the specified folder.
+   * 
+   * @param folder
+   *          the folder where the store files are kept
+   * 
+   * @throws IOException
+   *           if the store files could not be opened or created
+   */
+  public ImageFileListIconsStore(final File folder) throws IOException {
+
+    this.folder = folder;
+
+    if (!folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("the folder could not be created: " + folder);
+    }
+
+    dataFile = new RandomAccessFile(new File(folder, DATA_FILE_NAME), "rw");
+    dataChannel = dataFile.getChannel();
+
+    indexFile = new RandomAccessFile(new File(folder, INDEX_FILE_NAME), "rw");
+    indexChannel = indexFile.getChannel();
+
+    if (indexChannel.size() >= HEADER_SIZE) {
+
+      index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+
+      if (isValidIndex()) {
+        capacity = index.getInt(HEADER_CAPACITY);
+      } else {
+        index = null;
+      }
+    }
+
+    if (index == null) {
+      dataChannel.truncate(0);
+      mapIndex(INITIAL_CAPACITY);
+    }
+
+    if (getDeadBytes() > getLiveBytes()) {
+      compact();
+    }
+  }
+
+  /**
+   * Returns the thumbnail stored for the specified file and size, if the file did not change since the thumbnail was
+   * stored.
+   * 
+   * @param file
+   *          the image file
+   * @param iconSize
+   *          the size of the thumbnail
+   * 
+   * @return the stored thumbnail, or <code>null</code> if there is none (or the file changed)
+   * 
+   * @throws IOException
+   *           if the thumbnail could not be read
+   */
+  public BufferedImage get(final File file, final int iconSize) throws IOException {
+
+    final String path = file.getAbsolutePath();
+    final long hash = hash(path, iconSize);
+
+    final ByteBuffer data;
+
+    synchronized (this) {
+
+      final int slot = find(hash, iconSize);
+
+      if (slot == -1) {
+        return null;
+      }
+
+      final int position = HEADER_SIZE + slot * SLOT_SIZE;
+
+      if (index.getLong(position + SLOT_LAST_MODIFIED) != file.lastModified() || index.getLong(position + SLOT_LENGTH) != file.length()) {
+        delete(slot);
+        return null;
+      }
+
+      data = ByteBuffer.allocate(index.getInt(position + SLOT_DATA_LENGTH));
+      read(data, index.getLong(position + SLOT_DATA_OFFSET));
+      data.flip();
+    }
+
+    //
+    // decoded without holding the lock
+
+    final int pathLength = data.remaining() >= 4 ? data.getInt() : -1;
+
+    if (pathLength < 0 || pathLength > data.remaining()) {
+      return null;
+    }
+
+    final byte[] storedPath = new byte[pathLength];
+    data.get(storedPath);
+
+    if (!path.equals(new String(storedPath, StandardCharsets.UTF_8))) {
+      return null;
+    }
+
+    return ImageIO.read(new ByteArrayInputStream(data.array(), data.position(), data.remaining()));
+  }
+
+  /**
+   * Stores the thumbnail for the specified file and size, replacing the old one (if any).
+   * 
+   * @param file
+   *          the image file
+   * @param iconSize
+   *          the size of the thumbnail
+   * @param image
+   *          the thumbnail
+   * 
+   * @throws IOException
+   *           if the thumbnail could not be written
+   */
+  public void put(final File file, final int iconSize, final BufferedImage image) throws IOException {
+
+    final String path = file.getAbsolutePath();
+    final long hash = hash(path, iconSize);
+
+    //
+    // encoded without holding the lock
+
+    final ByteArrayOutputStream imageBytes = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", imageBytes);
+
+    final byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+
+    final ByteBuffer data = ByteBuffer.allocate(4 + pathBytes.length + imageBytes.size());
+    data.putInt(pathBytes.length);
+    data.put(pathBytes);
+    data.put(imageBytes.toByteArray());
+    data.flip();
+
+    final long lastModified = file.lastModified();
+    final long length = file.length();
+
+    synchronized (this) {
+
+      final long dataOffset = dataChannel.size();
+      write(data, dataOffset);
+
+      final int oldSlot = find(hash, iconSize);
+
+      if (oldSlot != -1) {
+        delete(oldSlot);
+      }
+
+      if ((getCount() + getDeleted() + 1) * 2 > capacity) {
+        mapIndex(getCount() * 2 >= capacity ? capacity * 2 : capacity);
+      }
+
+      insert(hash, iconSize, lastModified, length, dataOffset, data.limit());
+    }
+  }
+
+  /**
+   * Removes the thumbnail stored for the specified file and size.
+   * 
+   * @param file
+   *          the image file
+   * @param iconSize
+   *          the size of the thumbnail
+   */
+  public synchronized void remove(final File file, final int iconSize) {
+
+    final int slot = find(hash(file.getAbsolutePath(), iconSize), iconSize);
+
+    if (slot != -1) {
+      delete(slot);
+    }
+  }
+
+  /**
+   * Rewrites the data file keeping only the live thumbnails.
+   * 
+   * @throws IOException
+   *           if the data file could not be rewritten
+   */
+  public synchronized void compact() throws IOException {
+
+    final File compactFile = new File(folder, DATA_FILE_NAME + ".compact");
+
+    final long[] compactOffsets = new long[capacity];
+
+    try (RandomAccessFile compactRandomAccessFile = new RandomAccessFile(compactFile, "rw"); FileChannel compactChannel = compactRandomAccessFile.getChannel()) {
+
+      compactChannel.truncate(0);
+
+      long compactOffset = 0;
+
+      for (int slot = 0; slot < capacity; slot++) {
+        compactOffsets[slot] = -1;
+      }
+
+      for (int slot = 0; slot < capacity; slot++) {
+
+        final int position = HEADER_SIZE + slot * SLOT_SIZE;
+
+        if (index.getInt(position + SLOT_STATE) != STATE_USED) {
+          continue;
+        }
+
+        final int dataLength = index.getInt(position + SLOT_DATA_LENGTH);
+
+        final ByteBuffer data = ByteBuffer.allocate(dataLength);
+        read(data, index.getLong(position + SLOT_DATA_OFFSET));
+        data.flip();
+
+        while (data.hasRemaining()) {
+          compactChannel.write(data, compactOffset + data.position());
+        }
+
+        compactOffsets[slot] = compactOffset;
+        compactOffset += dataLength;
+      }
+
+      compactChannel.force(true);
+    }
+
+    dataChannel.close();
+    dataFile.close();
+
+    //
+    // the old data file is replaced in a single step (a crash leaves either the old file or the new one)
+
+    final File file = new File(folder, DATA_FILE_NAME);
+
+    try {
+      Files.move(compactFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    finally {
+      dataFile = new RandomAccessFile(file, "rw");
+      dataChannel = dataFile.getChannel();
+    }
+
+    //
+    // only now the index points to the new positions
+
+    for (int slot = 0; slot < capacity; slot++) {
+      if (compactOffsets[slot] != -1) {
+        index.putLong(HEADER_SIZE + slot * SLOT_SIZE + SLOT_DATA_OFFSET, compactOffsets[slot]);
+      }
+    }
+
+    index.putLong(HEADER_DEAD_BYTES, 0);
+    index.force();
+  }
+
+  public synchronized int getCount() {
+    return index.getInt(HEADER_COUNT);
+  }
+
+  public synchronized long getLiveBytes() {
+    return index.getLong(HEADER_LIVE_BYTES);
+  }
+
+  public synchronized long getDeadBytes() {
+    return index.getLong(HEADER_DEAD_BYTES);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+
+    index.force();
+
+    dataChannel.close();
+    dataFile.close();
+
+    indexChannel.close();
+    indexFile.close();
+  }
+
+  private int getDeleted() {
+    return index.getInt(HEADER_DELETED);
+  }
+
+  /**
+   * Checks the mapped index file against its header: the magic number, the version, the capacity (the file must be big
+   * enough for it), the counters (within the capacity), and the data file (at least as big as the
+   * bytes the index accounts for).
+   */
+  private boolean isValidIndex() throws IOException {
+
+    if (index.getInt(HEADER_MAGIC) != MAGIC || index.getInt(HEADER_VERSION) != VERSION) {
+      return false;
+    }
+
+    final int indexCapacity = index.getInt(HEADER_CAPACITY);
+
+    if (indexCapacity <= 0 || index.capacity() < HEADER_SIZE + (long) indexCapacity * SLOT_SIZE) {
+      return false;
+    }
+
+    final int count = index.getInt(HEADER_COUNT);
+    final int deleted = index.getInt(HEADER_DELETED);
+
+    if (count < 0 || deleted < 0 || count + deleted > indexCapacity) {
+      return false;
+    }
+
+    final long liveBytes = index.getLong(HEADER_LIVE_BYTES);
+    final long deadBytes = index.getLong(HEADER_DEAD_BYTES);
+
+    return liveBytes >= 0 && deadBytes >= 0 && liveBytes + deadBytes <= dataChannel.size();
+  }
+
+  /**
+   * Maps the index file with the specified capacity and (re)inserts the used slots (the deleted ones are dropped).
+   */
+  private void mapIndex(final int newCapacity) throws IOException {
+
+    //
+    // copy the used slots (if any) before remapping
+
+    long[] slots = new long[0];
+    int slotsCount = 0;
+
+    long liveBytes = 0;
+    long deadBytes = 0;
+
+    if (index != null) {
+
+      slots = new long[getCount() * 6];
+
+      for (int slot = 0; slot < capacity; slot++) {
+
+        final int position = HEADER_SIZE + slot * SLOT_SIZE;
+
+        if (index.getInt(position + SLOT_STATE) == STATE_USED) {
+          slots[slotsCount * 6 + 0] = index.getLong(position + SLOT_HASH);
+          slots[slotsCount * 6 + 1] = index.getInt(position + SLOT_ICON_SIZE);
+          slots[slotsCount * 6 + 2] = index.getLong(position + SLOT_LAST_MODIFIED);
+          slots[slotsCount * 6 + 3] = index.getLong(position + SLOT_LENGTH);
+          slots[slotsCount * 6 + 4] = index.getLong(position + SLOT_DATA_OFFSET);
+          slots[slotsCount * 6 + 5] = index.getInt(position + SLOT_DATA_LENGTH);
+          slotsCount++;
+        }
+      }
+
+      liveBytes = getLiveBytes();
+      deadBytes = getDeadBytes();
+    }
+
+    //
+    // map the index with the new capacity
+
+    capacity = newCapacity;
+
+    final long indexSize = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+
+    index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize);
+
+    final byte[] zeros = new byte[SLOT_SIZE * 64];
+    index.position(0);
+    while (index.hasRemaining()) {
+      index.put(zeros, 0, Math.min(zeros.length, index.remaining()));
+    }
+
+    index.putInt(HEADER_MAGIC, MAGIC);
+    index.putInt(HEADER_VERSION, VERSION);
+    index.putInt(HEADER_CAPACITY, capacity);
+    index.putLong(HEADER_DEAD_BYTES, deadBytes);
+
+    //
+    // and insert back the copied slots
+
+    for (int i = 0; i < slotsCount; i++) {
+      insert(slots[i * 6 + 0], (int) slots[i * 6 + 1], slots[i * 6 + 2], slots[i * 6 + 3], slots[i * 6 + 4], (int) slots[i * 6 + 5]);
+    }
+
+    index.putLong(HEADER_LIVE_BYTES, liveBytes);
+  }
+
+  private int find(final long hash, final int iconSize) {
+
+    for (int i = 0, slot = slot(hash); i < capacity; i++, slot = (slot + 1) % capacity) {
+
+      final int position = HEADER_SIZE + slot * SLOT_SIZE;
+      final int state = index.getInt(position + SLOT_STATE);
+
+      if (state == STATE_EMPTY) {
+        return -1;
+      }
+
+      if (state == STATE_USED && index.getLong(position + SLOT_HASH) == hash && index.getInt(position + SLOT_ICON_SIZE) == iconSize) {
+        return slot;
+      }
+    }
+
+    return -1;
+  }
+
+  private void insert(final long hash, final int iconSize, final long lastModified, final long length, final long dataOffset, final int dataLength) {
+
+    for (int slot = slot(hash);; slot = (slot + 1) % capacity) {
+
+      final int position = HEADER_SIZE + slot * SLOT_SIZE;
+      final int state = index.getInt(position + SLOT_STATE);
+
+      if (state != STATE_USED) {
+
+        index.putLong(position + SLOT_HASH, hash);
+        index.putLong(position + SLOT_LAST_MODIFIED, lastModified);
+        index.putLong(position + SLOT_LENGTH, length);
+        index.putLong(position + SLOT_DATA_OFFSET, dataOffset);
+        index.putInt(position + SLOT_DATA_LENGTH, dataLength);
+        index.putInt(position + SLOT_ICON_SIZE, iconSize);
+        index.putInt(position + SLOT_STATE, STATE_USED);
+
+        if (state == STATE_DELETED) {
+          index.putInt(HEADER_DELETED, getDeleted() - 1);
+        }
+
+        index.putInt(HEADER_COUNT, getCount() + 1);
+        index.putLong(HEADER_LIVE_BYTES, getLiveBytes() + dataLength);
+
+        return;
+      }
+    }
+  }
+
+  private void delete(final int slot) {
+
+    final int position = HEADER_SIZE + slot * SLOT_SIZE;
+    final int dataLength = index.getInt(position + SLOT_DATA_LENGTH);
+
+    index.putInt(position + SLOT_STATE, STATE_DELETED);
+
+    index.putInt(HEADER_COUNT, getCount() - 1);
+    index.putInt(HEADER_DELETED, getDeleted() + 1);
+    index.putLong(HEADER_LIVE_BYTES, getLiveBytes() - dataLength);
+    index.putLong(HEADER_DEAD_BYTES, getDeadBytes() + dataLength);
+  }
+
+  private int slot(final long hash) {
+    return (int) ((hash & Long.MAX_VALUE) % capacity);
+  }
+
+  private void read(final ByteBuffer buffer, final long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (dataChannel.read(buffer, position + buffer.position()) == -1) {
+        throw new IOException("unexpected end of the data file (" + position + ")");
+      }
+    }
+  }
+
+  private void write(final ByteBuffer buffer, final long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      dataChannel.write(buffer, position + buffer.position());
+    }
+  }
+
+  /**
+   * FNV-1a (64 bits) hash of the path and the size.
+   */
+  private static long hash(final String path, final int iconSize) {
+
+    long hash = 0xcbf29ce484222325L;
+
+    for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= (b & 0xff);
+      hash *= 0x100000001b3L;
+    }
+
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      hash ^= (iconSize >>> shift) & 0xff;
+      hash *= 0x100000001b3L;
+    }
+
+    return hash;
+  }
+
+}
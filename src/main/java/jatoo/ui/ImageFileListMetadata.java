@@ -0,0 +1,438 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The metadata of the files from {@link ImageFileList} component (length, last modified time, image dimensions and
+ * EXIF original date), extracted in background.
+ * <p>
+ * To scale to a large number of files, the metadata is not kept as an object per file but in primitive arrays: each
+ * file gets a slot (see {@link #getSlot(File)}), an index in all the arrays. The missing values (not yet extracted or
+ * not available) are -1.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageFileListMetadata {
+
+  private final Log logger = LogFactory.getLog(getClass());
+
+  private final Map<File, Integer> slots = new HashMap<>();
+
+  private File[] files = new File[0];
+  private long[] lengths = new long[0];
+  private long[] lastModifiedTimes = new long[0];
+  private int[] widths = new int[0];
+  private int[] heights = new int[0];
+  private long[] exifDates = new long[0];
+  private boolean[] extracted = new boolean[0];
+
+  /** The free slots (from the removed files), as a stack. */
+  private int[] freeSlots = new int[0];
+  private int freeSlotsCount;
+
+  private int slotsCount;
+
+  private final LinkedHashSet<File> queue = new LinkedHashSet<>();
+
+  private volatile Runnable extractedListener;
+
+  public ImageFileListMetadata() {
+
+    final Thread thread = new Thread(new Runnable() {
+      public void run() {
+        extract();
+      }
+    }, getClass().getSimpleName());
+
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  /**
+   * Sets the listener notified (from the background thread) every time the queue of files waiting for the extraction
+   * gets empty.
+   * 
+   * @param extractedListener
+   *          the listener
+   */
+  public void setExtractedListener(final Runnable extractedListener) {
+    this.extractedListener = extractedListener;
+  }
+
+  /**
+   * Adds the specified files (the ones without a slot) and queues them for the extraction.
+   * 
+   * @param files
+   *          the files
+   */
+  public void add(final Collection<File> files) {
+    synchronized (slots) {
+
+      for (File file : files) {
+
+        if (slots.containsKey(file)) {
+          continue;
+        }
+
+        final int slot;
+
+        if (freeSlotsCount > 0) {
+          slot = freeSlots[--freeSlotsCount];
+        } else {
+          ensureCapacity(slotsCount + 1);
+          slot = slotsCount++;
+        }
+
+        slots.put(file, slot);
+
+        this.files[slot] = file;
+        lengths[slot] = -1;
+        lastModifiedTimes[slot] = -1;
+        widths[slot] = -1;
+        heights[slot] = -1;
+        exifDates[slot] = -1;
+        extracted[slot] = false;
+
+        queue.add(file);
+      }
+
+      slots.notify();
+    }
+  }
+
+  /**
+   * Removes the specified files (and frees their slots).
+   * 
+   * @param files
+   *          the files
+   */
+  public void remove(final Collection<File> files) {
+    synchronized (slots) {
+      for (File file : files) {
+
+        final Integer slot = slots.remove(file);
+
+        if (slot != null) {
+
+          queue.remove(file);
+          this.files[slot] = null;
+
+          if (freeSlotsCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeSlots.length * 2));
+          }
+
+          freeSlots[freeSlotsCount++] = slot;
+        }
+      }
+    }
+  }
+
+  public void removeAll() {
+    synchronized (slots) {
+      slots.clear();
+      queue.clear();
+      Arrays.fill(files, null);
+      freeSlotsCount = 0;
+      slotsCount = 0;
+    }
+  }
+
+  /**
+   * Queues the specified file for a new extraction (for example after the file was modified).
+   * 
+   * @param file
+   *          the file
+   */
+  public void invalidate(final File file) {
+    synchronized (slots) {
+
+      final Integer slot = slots.get(file);
+
+      if (slot != null) {
+        extracted[slot] = false;
+        queue.add(file);
+        slots.notify();
+      }
+    }
+  }
+
+  /**
+   * Returns the slot of the specified file.
+   * 
+   * @param file
+   *          the file
+   * 
+   * @return the slot, or -1 if the file was not added
+   */
+  public int getSlot(final File file) {
+    synchronized (slots) {
+      final Integer slot = slots.get(file);
+      return slot == null ? -1 : slot;
+    }
+  }
+
+  /**
+   * Returns the slots of the specified files, in one pass (under a single lock).
+   * 
+   * @param files
+   *          the files
+   * 
+   * @return the slots (-1 for the files not added)
+   */
+  public int[] getSlots(final File[] files) {
+    synchronized (slots) {
+
+      final int[] fileSlots = new int[files.length];
+
+      for (int i = 0; i < files.length; i++) {
+        final Integer slot = slots.get(files[i]);
+        fileSlots[i] = slot == null ? -1 : slot;
+      }
+
+      return fileSlots;
+    }
+  }
+
+  public int getPendingCount() {
+    synchronized (slots) {
+      return queue.size();
+    }
+  }
+
+  public File getFile(final int slot) {
+    synchronized (slots) {
+      return files[slot];
+    }
+  }
+
+  public long getLength(final int slot) {
+    synchronized (slots) {
+      return lengths[slot];
+    }
+  }
+
+  public long getLastModified(final int slot) {
+    synchronized (slots) {
+      return lastModifiedTimes[slot];
+    }
+  }
+
+  public int getWidth(final int slot) {
+    synchronized (slots) {
+      return widths[slot];
+    }
+  }
+
+  public int getHeight(final int slot) {
+    synchronized (slots) {
+      return heights[slot];
+    }
+  }
+
+  public long getExifDate(final int slot) {
+    synchronized (slots) {
+      return exifDates[slot];
+    }
+  }
+
+  public boolean isExtracted(final int slot) {
+    synchronized (slots) {
+      return extracted[slot];
+    }
+  }
+
+  /**
+   * Copies the values of the specified key for the specified slots, in one pass (under a single lock).
+   * 
+   * @param key
+   *          the key
+   * @param fileSlots
+   *          the slots
+   * 
+   * @return the values (-1 for the missing ones)
+   */
+  long[] getValues(final ImageFileListSorter.Key key, final int[] fileSlots) {
+    synchronized (slots) {
+
+      final long[] values = new long[fileSlots.length];
+
+      for (int i = 0; i < fileSlots.length; i++) {
+
+        final int slot = fileSlots[i];
+
+        if (slot == -1) {
+          values[i] = -1;
+          continue;
+        }
+
+        switch (key) {
+          case SIZE:
+            values[i] = lengths[slot];
+            break;
+          case DATE:
+            values[i] = lastModifiedTimes[slot];
+            break;
+          case DIMENSIONS:
+            values[i] = widths[slot] == -1 ? -1 : (long) widths[slot] * heights[slot];
+            break;
+          case EXIF_DATE:
+            values[i] = exifDates[slot];
+            break;
+          default:
+            values[i] = -1;
+        }
+      }
+
+      return values;
+    }
+  }
+
+  /**
+   * The loop of the background thread.
+   */
+  private void extract() {
+
+    while (true) {
+
+      final File file;
+
+      synchronized (slots) {
+
+        if (queue.isEmpty()) {
+
+          try {
+            slots.wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+
+          continue;
+        }
+
+        final Iterator<File> iterator = queue.iterator();
+        file = iterator.next();
+        iterator.remove();
+      }
+
+      long length = -1;
+      long lastModified = -1;
+      int width = -1;
+      int height = -1;
+      long exifDate = -1;
+
+      try {
+
+        final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        length = attributes.size();
+        lastModified = attributes.lastModifiedTime().toMillis();
+
+        //
+        // the dimensions, from the header (the image is not decoded)
+
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+
+          final Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+
+          if (readers != null && readers.hasNext()) {
+
+            final ImageReader reader = readers.next();
+
+            try {
+              reader.setInput(stream, true, true);
+              width = reader.getWidth(0);
+              height = reader.getHeight(0);
+            } finally {
+              reader.dispose();
+            }
+          }
+        }
+
+        final ImageExif exif = ImageExif.read(file);
+
+        if (exif != null) {
+          exifDate = exif.getDateTimeOriginal();
+        }
+      }
+
+      catch (IOException | RuntimeException e) {
+        logger.debug("the metadata could not be (fully) extracted: " + file, e);
+      }
+
+      final boolean isQueueEmpty;
+
+      synchronized (slots) {
+
+        final Integer slot = slots.get(file);
+
+        if (slot != null) {
+          lengths[slot] = length;
+          lastModifiedTimes[slot] = lastModified;
+          widths[slot] = width;
+          heights[slot] = height;
+          exifDates[slot] = exifDate;
+          extracted[slot] = true;
+        }
+
+        isQueueEmpty = queue.isEmpty();
+      }
+
+      final Runnable extractedListener = this.extractedListener;
+
+      if (isQueueEmpty && extractedListener != null) {
+        extractedListener.run();
+      }
+    }
+  }
+
+  private void ensureCapacity(final int capacity) {
+
+    if (capacity <= files.length) {
+      return;
+    }
+
+    final int newCapacity = Math.max(capacity, Math.max(16, files.length * 2));
+
+    files = Arrays.copyOf(files, newCapacity);
+    lengths = Arrays.copyOf(lengths, newCapacity);
+    lastModifiedTimes = Arrays.copyOf(lastModifiedTimes, newCapacity);
+    widths = Arrays.copyOf(widths, newCapacity);
+    heights = Arrays.copyOf(heights, newCapacity);
+    exifDates = Arrays.copyOf(exifDates, newCapacity);
+    extracted = Arrays.copyOf(extracted, newCapacity);
+  }
+
+}
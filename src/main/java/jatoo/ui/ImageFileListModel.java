@@ -18,62 +18,666 @@ package jatoo.ui;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
-import javax.swing.DefaultListModel;
+import javax.swing.AbstractListModel;
 
 /**
  * The model for {@link ImageFileList} component.
+ * <p>
+ * The files are kept in an array, indexed by a hash map (file to index), so {@link #indexOf(File)} is O(1) and the
+ * bulk operations ({@link #addImages(Collection)}, {@link #removeImages(Collection)}) are O(n) and fire a single
+ * event. A file can be added only once.
+ * <p>
+ * A view (see {@link #setView(int[])}) can sort and/or filter the files without copying them: the view is an array
+ * of indexes (in the order they are to be displayed) of the files from the model. All the indexes used by the
+ * {@link javax.swing.ListModel} methods are view indexes.
+ * <p>
+ * The methods of {@link javax.swing.DefaultListModel} (the previous super class) are kept, working on the view
+ * indexes too, with two differences: a file already in the model is not added again (or set at another index) and
+ * <code>setSize(int)</code> is not supported (there are no <code>null</code> elements). The model is no longer a
+ * {@link javax.swing.DefaultListModel}, so the code casting to it must use this class instead.
  * 
  * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
- * @version 2.0-SNAPSHOT, June 9, 2017
+ * @version 3.0, October 17, 2026
  */
 @SuppressWarnings("serial")
-public class ImageFileListModel extends DefaultListModel<File> {
+public class ImageFileListModel extends AbstractListModel<File> {
+
+  private File[] files = new File[16];
+  private int size;
+
+  private final Map<File, Integer> indexes = new HashMap<>();
+
+  /** The view (indexes of the files in the display order), or <code>null</code> for all the files, in order. */
+  private int[] view;
+
+  /** The inverse of the view (file index to view index, or -1 if the file is filtered out). */
+  private int[] viewIndexes;
+
+  /** Incremented every time files are added or removed (see {@link #getModificationCount()}). */
+  private int modificationCount;
 
   public ImageFileListModel() {}
 
+  @Override
+  public int getSize() {
+    return view == null ? size : view.length;
+  }
+
+  public int size() {
+    return getSize();
+  }
+
+  @Override
+  public File getElementAt(final int index) {
+    return files[view == null ? index : view[index]];
+  }
+
+  /**
+   * Returns the index (in the view) of the specified file.
+   * 
+   * @param file
+   *          the file
+   * 
+   * @return the index of the file, or -1 if the file is not in the model (or filtered out by the view)
+   */
+  public int indexOf(final Object file) {
+
+    final Integer index = indexes.get(file);
+
+    if (index == null) {
+      return -1;
+    }
+
+    return view == null ? index : viewIndexes[index];
+  }
+
+  public boolean contains(final Object file) {
+    return indexes.containsKey(file);
+  }
+
   public void addImage(final File file) {
-    addElement(file);
+    addImages(Collections.singletonList(file));
   }
 
-  public void addImages(final List<File> files) {
+  /**
+   * Adds the specified files (the ones not already in the model) and fires a single event. If there is a view, the
+   * files are added at the end of the view.
+   * 
+   * @param files
+   *          the files to be added
+   */
+  public void addImages(final Collection<File> files) {
+
+    ensureCapacity(size + files.size());
+
+    final int oldSize = size;
+
     for (File file : files) {
-      addElement(file);
+      if (!indexes.containsKey(file)) {
+        indexes.put(file, size);
+        this.files[size++] = file;
+      }
+    }
+
+    if (size == oldSize) {
+      return;
+    }
+
+    modificationCount++;
+
+    if (view == null) {
+      fireIntervalAdded(this, oldSize, size - 1);
+    }
+
+    else {
+
+      final int oldViewSize = view.length;
+
+      view = Arrays.copyOf(view, oldViewSize + size - oldSize);
+      viewIndexes = Arrays.copyOf(viewIndexes, this.files.length);
+
+      for (int i = oldSize; i < size; i++) {
+        view[oldViewSize + i - oldSize] = i;
+        viewIndexes[i] = oldViewSize + i - oldSize;
+      }
+
+      fireIntervalAdded(this, oldViewSize, view.length - 1);
     }
   }
 
+  /**
+   * Returns the files, in the view order.
+   * 
+   * @return the list of files
+   */
   public List<File> getImages() {
 
-    final List<File> files = new ArrayList<>(size());
+    final int n = getSize();
+    final List<File> images = new ArrayList<>(n);
 
-    for (int i = 0, n = size(); i < n; i++) {
-      files.add(get(i));
+    for (int i = 0; i < n; i++) {
+      images.add(getElementAt(i));
     }
 
-    return files;
+    return images;
   }
 
   public void removeImage(final File file) {
-    removeElement(file);
+    removeImages(Collections.singletonList(file));
   }
 
-  public void removeImages(final List<File> files) {
+  /**
+   * Removes the specified files in a single pass. If the removed files form a single range (in the view) a single
+   * "interval removed" event is fired, otherwise the tail of the list is fired as removed and the rest as changed (the
+   * selection, if any, must be restored by the caller).
+   * 
+   * @param files
+   *          the files to be removed
+   */
+  public void removeImages(final Collection<File> files) {
+
+    //
+    // mark the removed files
+
+    final boolean[] removed = new boolean[size];
+    int removedCount = 0;
+    int firstRemoved = size;
+
     for (File file : files) {
-      removeElement(file);
+
+      final Integer index = indexes.remove(file);
+
+      if (index != null && !removed[index]) {
+        removed[index] = true;
+        removedCount++;
+        firstRemoved = Math.min(firstRemoved, index);
+      }
+    }
+
+    if (removedCount == 0) {
+      return;
+    }
+
+    modificationCount++;
+
+    //
+    // the view indexes of the removed files (for the events), before compacting
+
+    final int oldViewSize = getSize();
+
+    int removedViewMin = Integer.MAX_VALUE;
+    int removedViewMax = -1;
+    int removedViewCount = 0;
+
+    for (int i = firstRemoved; i < size; i++) {
+      if (removed[i]) {
+
+        final int viewIndex = view == null ? i : viewIndexes[i];
+
+        if (viewIndex != -1) {
+          removedViewMin = Math.min(removedViewMin, viewIndex);
+          removedViewMax = Math.max(removedViewMax, viewIndex);
+          removedViewCount++;
+        }
+      }
+    }
+
+    //
+    // compact the files (and the index), remember the new indexes for the view
+
+    final int[] newIndexes = view == null ? null : new int[size];
+
+    int newSize = firstRemoved;
+
+    for (int i = firstRemoved; i < size; i++) {
+
+      if (removed[i]) {
+
+        if (newIndexes != null) {
+          newIndexes[i] = -1;
+        }
+      }
+
+      else {
+
+        if (newIndexes != null) {
+          newIndexes[i] = newSize;
+        }
+
+        this.files[newSize] = this.files[i];
+        indexes.put(this.files[newSize], newSize);
+
+        newSize++;
+      }
+    }
+
+    if (newIndexes != null) {
+      for (int i = 0; i < firstRemoved; i++) {
+        newIndexes[i] = i;
+      }
+    }
+
+    Arrays.fill(this.files, newSize, size, null);
+    size = newSize;
+
+    //
+    // update the view
+
+    if (view != null) {
+
+      final int[] newView = new int[view.length];
+      int newViewSize = 0;
+
+      for (int index : view) {
+        if (newIndexes[index] != -1) {
+          newView[newViewSize++] = newIndexes[index];
+        }
+      }
+
+      setViewImpl(Arrays.copyOf(newView, newViewSize));
+    }
+
+    //
+    // and the events
+
+    if (removedViewCount == 0) {
+      return;
+    }
+
+    if (removedViewMax - removedViewMin + 1 == removedViewCount) {
+      fireIntervalRemoved(this, removedViewMin, removedViewMax);
+    }
+
+    else {
+
+      final int newViewSize = getSize();
+
+      fireIntervalRemoved(this, newViewSize, oldViewSize - 1);
+
+      if (newViewSize > 0) {
+        fireContentsChanged(this, removedViewMin, newViewSize - 1);
+      }
     }
   }
 
   public void removeAllImages() {
-    removeAllElements();
+
+    final int oldSize = getSize();
+
+    files = new File[16];
+    size = 0;
+    indexes.clear();
+
+    modificationCount++;
+
+    if (view != null) {
+      setViewImpl(new int[0]);
+    }
+
+    if (oldSize > 0) {
+      fireIntervalRemoved(this, 0, oldSize - 1);
+    }
+  }
+
+  /**
+   * Returns the number of files in the model (regardless of the view).
+   * 
+   * @return the number of files
+   */
+  public int getImagesCount() {
+    return size;
+  }
+
+  /**
+   * Returns the file at the specified index in the model (regardless of the view).
+   * 
+   * @param index
+   *          the index in the model
+   * 
+   * @return the file
+   */
+  public File getImage(final int index) {
+
+    if (index >= size) {
+      throw new ArrayIndexOutOfBoundsException(index + " >= " + size);
+    }
+
+    return files[index];
+  }
+
+  /**
+   * Sets the view: the indexes of the files (in the model) in the order they are to be displayed. The files not in the
+   * view are filtered out. Fires the whole list as changed.
+   * 
+   * @param view
+   *          the indexes of the files to be displayed, or <code>null</code> for all the files, in order
+   */
+  public void setView(final int[] view) {
+
+    final int oldSize = getSize();
+
+    setViewImpl(view == null ? null : view.clone());
+
+    final int newSize = getSize();
+
+    if (newSize < oldSize) {
+      fireIntervalRemoved(this, newSize, oldSize - 1);
+    } else if (newSize > oldSize) {
+      fireIntervalAdded(this, oldSize, newSize - 1);
+    }
+
+    if (newSize > 0) {
+      fireContentsChanged(this, 0, newSize - 1);
+    }
+  }
+
+  /**
+   * Returns a copy of the view.
+   * 
+   * @return the indexes of the displayed files, or <code>null</code> if all the files are displayed, in order
+   */
+  public int[] getView() {
+    return view == null ? null : view.clone();
+  }
+
+  /**
+   * Returns a counter incremented every time files are added or removed, so a snapshot of the model (for example the
+   * one a view is computed from) can be checked if it is still valid.
+   * 
+   * @return the modification count
+   */
+  public int getModificationCount() {
+    return modificationCount;
   }
 
   public void fireContentsChanged() {
-    super.fireContentsChanged(this, 0, size());
+    super.fireContentsChanged(this, 0, getSize() - 1);
   }
 
   public void fireContentsChanged(int index0, int index1) {
     super.fireContentsChanged(this, index0, index1);
   }
 
+  //
+  // the methods of DefaultListModel (all the indexes are view indexes)
+
+  public boolean isEmpty() {
+    return getSize() == 0;
+  }
+
+  public int capacity() {
+    return files.length;
+  }
+
+  public void ensureCapacity(final int capacity) {
+    if (capacity > files.length) {
+      files = Arrays.copyOf(files, Math.max(capacity, files.length * 2));
+    }
+  }
+
+  public void trimToSize() {
+    files = Arrays.copyOf(files, size);
+  }
+
+  public File get(final int index) {
+    checkIndex(index);
+    return getElementAt(index);
+  }
+
+  public File elementAt(final int index) {
+    return get(index);
+  }
+
+  public File firstElement() {
+
+    if (getSize() == 0) {
+      throw new NoSuchElementException();
+    }
+
+    return getElementAt(0);
+  }
+
+  public File lastElement() {
+
+    if (getSize() == 0) {
+      throw new NoSuchElementException();
+    }
+
+    return getElementAt(getSize() - 1);
+  }
+
+  public int indexOf(final Object file, final int index) {
+    final int fileIndex = indexOf(file);
+    return fileIndex >= index ? fileIndex : -1;
+  }
+
+  public int lastIndexOf(final Object file) {
+    return indexOf(file);
+  }
+
+  public int lastIndexOf(final Object file, final int index) {
+    final int fileIndex = indexOf(file);
+    return fileIndex <= index ? fileIndex : -1;
+  }
+
+  public Enumeration<File> elements() {
+    return Collections.enumeration(getImages());
+  }
+
+  public Object[] toArray() {
+    return getImages().toArray();
+  }
+
+  public void copyInto(final Object[] array) {
+    getImages().toArray(array);
+  }
+
+  public void addElement(final File file) {
+    addImage(file);
+  }
+
+  /**
+   * Inserts the file at the specified index (in the view), unless the file is already in the model.
+   * 
+   * @param index
+   *          the index
+   * @param file
+   *          the file
+   */
+  public void add(final int index, final File file) {
+
+    final int viewSize = getSize();
+
+    if (index < 0 || index > viewSize) {
+      throw new ArrayIndexOutOfBoundsException(index + " > " + viewSize);
+    }
+
+    if (indexes.containsKey(file)) {
+      return;
+    }
+
+    //
+    // the file goes in the model before the one now at the index (at the end, if the index is the end of the view)
+
+    final int position = index == viewSize ? size : view == null ? index : view[index];
+
+    ensureCapacity(size + 1);
+
+    System.arraycopy(files, position, files, position + 1, size - position);
+    files[position] = file;
+    size++;
+
+    for (int i = position; i < size; i++) {
+      indexes.put(files[i], i);
+    }
+
+    modificationCount++;
+
+    if (view != null) {
+
+      final int[] newView = new int[view.length + 1];
+
+      for (int i = 0, j = 0; i < newView.length; i++) {
+        if (i == index) {
+          newView[i] = position;
+        } else {
+          newView[i] = view[j] >= position ? view[j] + 1 : view[j];
+          j++;
+        }
+      }
+
+      setViewImpl(newView);
+    }
+
+    fireIntervalAdded(this, index, index);
+  }
+
+  public void insertElementAt(final File file, final int index) {
+    add(index, file);
+  }
+
+  /**
+   * Replaces the file at the specified index (in the view).
+   * 
+   * @param index
+   *          the index
+   * @param file
+   *          the new file
+   * 
+   * @return the replaced file
+   * 
+   * @throws IllegalArgumentException
+   *           if the new file is already in the model, at another index
+   */
+  public File set(final int index, final File file) {
+
+    checkIndex(index);
+
+    final int position = view == null ? index : view[index];
+    final File oldFile = files[position];
+
+    if (oldFile.equals(file)) {
+      return oldFile;
+    }
+
+    if (indexes.containsKey(file)) {
+      throw new IllegalArgumentException("the file is already in the model: " + file);
+    }
+
+    indexes.remove(oldFile);
+    indexes.put(file, position);
+    files[position] = file;
+
+    modificationCount++;
+
+    fireContentsChanged(this, index, index);
+
+    return oldFile;
+  }
+
+  public void setElementAt(final File file, final int index) {
+    set(index, file);
+  }
+
+  public File remove(final int index) {
+    final File file = get(index);
+    removeImage(file);
+    return file;
+  }
+
+  public void removeElementAt(final int index) {
+    remove(index);
+  }
+
+  public boolean removeElement(final Object file) {
+
+    if (!(file instanceof File) || !contains(file)) {
+      return false;
+    }
+
+    removeImage((File) file);
+
+    return true;
+  }
+
+  /**
+   * Removes the files between the specified indexes (in the view), both inclusive.
+   * 
+   * @param fromIndex
+   *          the index of the first file
+   * @param toIndex
+   *          the index of the last file
+   */
+  public void removeRange(final int fromIndex, final int toIndex) {
+
+    if (fromIndex > toIndex) {
+      throw new IllegalArgumentException("fromIndex must be <= toIndex");
+    }
+
+    checkIndex(fromIndex);
+    checkIndex(toIndex);
+
+    final List<File> range = new ArrayList<>(toIndex - fromIndex + 1);
+
+    for (int i = fromIndex; i <= toIndex; i++) {
+      range.add(getElementAt(i));
+    }
+
+    removeImages(range);
+  }
+
+  public void removeAllElements() {
+    removeAllImages();
+  }
+
+  public void clear() {
+    removeAllImages();
+  }
+
+  @Override
+  public String toString() {
+    return getImages().toString();
+  }
+
+  private void checkIndex(final int index) {
+    if (index < 0 || index >= getSize()) {
+      throw new ArrayIndexOutOfBoundsException(index + " >= " + getSize());
+    }
+  }
+
+  private void setViewImpl(final int[] view) {
+
+    if (view == null) {
+      this.view = null;
+      this.viewIndexes = null;
+    }
+
+    else {
+
+      final int[] viewIndexes = new int[files.length];
+      Arrays.fill(viewIndexes, -1);
+
+      for (int i = 0; i < view.length; i++) {
+
+        if (view[i] < 0 || view[i] >= size || viewIndexes[view[i]] != -1) {
+          throw new IllegalArgumentException("invalid (or duplicate) view index: " + view[i]);
+        }
+
+        viewIndexes[view[i]] = i;
+      }
+
+      this.view = view;
+      this.viewIndexes = viewIndexes;
+    }
+  }
+
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Sorts and filters the files from {@link ImageFileList} component, over their metadata (see
+ * {@link ImageFileListMetadata}).
+ * <p>
+ * The result is a view (a permutation of the indexes of the files from the model, see
+ * {@link ImageFileListModel#setView(int[])}), computed in background with primitive arrays (no per-file objects, no
+ * file system access) and applied on the event dispatch thread. The files with unknown values are always last.
+ * <p>
+ * A result computed for a model that was modified meanwhile is still applied if files were only added (as while a
+ * folder is scanned), with the new files at the end, then only the new files are sorted and merged in (so a long scan
+ * does not starve the sort). For any other modification the sort is done again.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageFileListSorter {
+
+  /** The keys the files can be sorted by. */
+  public static enum Key {
+    NAME, SIZE, DATE, DIMENSIONS, EXIF_DATE
+  }
+
+  /** Under this length the sub arrays are sorted by insertion. */
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private final ImageFileList list;
+  private final ImageFileListModel model;
+  private final ImageFileListMetadata metadata;
+
+  private final ExecutorService executor;
+
+  /** Incremented on every request, so only the result of the last one is applied. */
+  private int generation;
+
+  public ImageFileListSorter(final ImageFileList list, final ImageFileListModel model, final ImageFileListMetadata metadata) {
+
+    this.list = list;
+    this.model = model;
+    this.metadata = metadata;
+
+    executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, ImageFileListSorter.class.getSimpleName());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Sorts and filters (in background) the files from the model. Must be called on the event dispatch thread.
+   * 
+   * @param key
+   *          the key to sort by, or <code>null</code> to keep the order the files were added
+   * @param ascending
+   *          the direction of the sort
+   * @param filter
+   *          the filter, or <code>null</code> to display all the files
+   */
+  public void sort(final Key key, final boolean ascending, final ImageFileListFilter filter) {
+    sort(key, ascending, filter, 0, null);
+  }
+
+  /**
+   * Sorts and filters the files from the model, the first ones (the ones from a previous snapshot) being already sorted
+   * and filtered by the specified view.
+   */
+  private void sort(final Key key, final boolean ascending, final ImageFileListFilter filter, final int sortedCount, final int[] sortedView) {
+
+    final int generation = ++this.generation;
+
+    if (key == null && filter == null) {
+      list.setView(null);
+      return;
+    }
+
+    //
+    // the snapshot of the model (the indexes of the view are indexes in this array)
+
+    final int modificationCount = model.getModificationCount();
+    final File[] files = new File[model.getImagesCount()];
+
+    for (int i = 0; i < files.length; i++) {
+      files[i] = model.getImage(i);
+    }
+
+    executor.execute(new Runnable() {
+      public void run() {
+
+        final int[] view = computeView(files, sortedCount, sortedView, key, ascending, filter);
+
+        SwingUtilities.invokeLater(new Runnable() {
+          public void run() {
+
+            if (generation != ImageFileListSorter.this.generation) {
+              return;
+            }
+
+            if (modificationCount == model.getModificationCount()) {
+              list.setView(view);
+            }
+
+            else if (isPrefixOfModel(files)) {
+
+              //
+              // files were only added meanwhile: the view is still valid, it is applied with the new files at the end
+              // (as the model does), then only the new files are sorted and merged in
+
+              final int[] newView = Arrays.copyOf(view, view.length + model.getImagesCount() - files.length);
+
+              for (int i = view.length, index = files.length; i < newView.length; i++, index++) {
+                newView[i] = index;
+              }
+
+              list.setView(newView);
+
+              sort(key, ascending, filter, files.length, view);
+            }
+
+            else {
+              sort(key, ascending, filter);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Checks if the files of the snapshot are still the first files of the model, at the same indexes.
+   */
+  private boolean isPrefixOfModel(final File[] files) {
+
+    if (files.length > model.getImagesCount()) {
+      return false;
+    }
+
+    for (int i = 0; i < files.length; i++) {
+      if (files[i] != model.getImage(i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Cancels the pending sort, if any (its result will not be applied).
+   */
+  public void cancel() {
+    generation++;
+  }
+
+  /**
+   * Computes the view of the files, the first ones (if any) being already sorted and filtered by the specified view:
+   * only the others are filtered and sorted, then merged in.
+   */
+  private int[] computeView(final File[] files, final int sortedCount, final int[] sortedView, final Key key, final boolean ascending, final ImageFileListFilter filter) {
+
+    final int[] slots = metadata.getSlots(files);
+
+    //
+    // filter
+
+    int[] view = new int[files.length - sortedCount];
+    int size = 0;
+
+    for (int i = sortedCount; i < files.length; i++) {
+      if (filter == null || slots[i] == -1 || filter.accept(metadata, slots[i])) {
+        view[size++] = i;
+      }
+    }
+
+    view = Arrays.copyOf(view, size);
+
+    if (key == null) {
+
+      //
+      // the order the files were added: the new ones after the sorted ones
+
+      if (sortedView == null) {
+        return view;
+      }
+
+      final int[] mergedView = Arrays.copyOf(sortedView, sortedView.length + view.length);
+      System.arraycopy(view, 0, mergedView, sortedView.length, view.length);
+
+      return mergedView;
+    }
+
+    //
+    // sort (stable, so the equal files remain in the order they were added)
+
+    final IndexComparator comparator;
+
+    if (key == Key.NAME) {
+
+      final String[] names = new String[files.length];
+
+      for (int index : view) {
+        names[index] = files[index].getName();
+      }
+
+      if (sortedView != null) {
+        for (int index : sortedView) {
+          names[index] = files[index].getName();
+        }
+      }
+
+      comparator = new IndexComparator() {
+        public int compare(int index1, int index2) {
+          final int result = String.CASE_INSENSITIVE_ORDER.compare(names[index1], names[index2]);
+          return ascending ? result : -result;
+        }
+      };
+    }
+
+    else {
+
+      final long[] values = metadata.getValues(key, slots);
+
+      comparator = new IndexComparator() {
+        public int compare(int index1, int index2) {
+
+          final long value1 = values[index1];
+          final long value2 = values[index2];
+
+          if (value1 == -1 || value2 == -1) {
+            return value1 == value2 ? 0 : (value1 == -1 ? 1 : -1);
+          }
+
+          final int result = Long.compare(value1, value2);
+          return ascending ? result : -result;
+        }
+      };
+    }
+
+    final int[] newView = view.clone();
+    mergeSort(view, newView, 0, view.length, comparator);
+
+    if (sortedView == null) {
+      return newView;
+    }
+
+    //
+    // merge the new files in (the sorted ones first, on equal values, as they were added first)
+
+    final int[] mergedView = new int[sortedView.length + newView.length];
+
+    for (int i = 0, p = 0, q = 0; i < mergedView.length; i++) {
+      if (q >= newView.length || (p < sortedView.length && comparator.compare(sortedView[p], newView[q]) <= 0)) {
+        mergedView[i] = sortedView[p++];
+      } else {
+        mergedView[i] = newView[q++];
+      }
+    }
+
+    return mergedView;
+  }
+
+  /**
+   * Sorts the specified range of the array (the source and the destination must have the same content).
+   */
+  private static void mergeSort(final int[] src, final int[] dest, final int low, final int high, final IndexComparator comparator) {
+
+    if (high - low < INSERTION_SORT_THRESHOLD) {
+
+      for (int i = low + 1; i < high; i++) {
+        for (int j = i; j > low && comparator.compare(dest[j - 1], dest[j]) > 0; j--) {
+          final int t = dest[j];
+          dest[j] = dest[j - 1];
+          dest[j - 1] = t;
+        }
+      }
+
+      return;
+    }
+
+    //
+    // sort the halves into the source (swapping the roles), then merge them into the destination
+
+    final int mid = (low + high) >>> 1;
+
+    mergeSort(dest, src, low, mid, comparator);
+    mergeSort(dest, src, mid, high, comparator);
+
+    if (comparator.compare(src[mid - 1], src[mid]) <= 0) {
+      System.arraycopy(src, low, dest, low, high - low);
+      return;
+    }
+
+    for (int i = low, p = low, q = mid; i < high; i++) {
+      if (q >= high || (p < mid && comparator.compare(src[p], src[q]) <= 0)) {
+        dest[i] = src[p++];
+      } else {
+        dest[i] = src[q++];
+      }
+    }
+  }
+
+  private static interface IndexComparator {
+    int compare(int index1, int index2);
+  }
+
+}
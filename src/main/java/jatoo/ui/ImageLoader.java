@@ -16,157 +16,647 @@
 
 package jatoo.ui;
 
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.stream.ImageInputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import jatoo.image.ImageUtils;
-
 /**
  * A "loader" thread where images can be loaded one at the time, with the option to drop current loading.
+ * <p>
+ * Each request (see {@link #load(File)}) gets a handle, a {@link ImageLoaderRequest}. A new request supersedes the
+ * previous one: the previous one is cancelled (if not yet started, it is never started, if started, the decoding is
+ * aborted), and the listeners are notified only for the latest request (the notifications of a superseded request are
+ * dropped, none is delivered after {@link #load(File)} returns). So a fast navigation does not pile up decoding work.
+ * <p>
+ * The images are decoded progressively: the listeners get a preview as soon as possible (the thumbnail embedded in
+ * the file, if any, and the image being decoded), then the regions decoded so far (see {@link ImageLoaderListener}).
+ * <p>
+ * Optionally (see {@link #setPrefetcher(ImageLoaderPrefetcher)}), the neighbors of the loaded image are decoded ahead of
+ * time, and the images found in the cache are loaded right away.
  * 
  * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
- * @version 2.1, February 13, 2018
+ * @version 3.0, October 17, 2026
  */
-public class ImageLoader implements Runnable {
+public class ImageLoader {
 
   private final Log logger = LogFactory.getLog(getClass());
 
-  private ImageLoaderListener[] listeners;
+  /** The minimum time (in milliseconds) between two updates of the image being decoded. */
+  public static final int UPDATE_INTERVAL = 100;
 
-  private final Thread thread;
-  private boolean threadStopped;
+  private final ImageLoaderListener[] listeners;
 
-  private File file;
-  private FileInputStream stream;
+  private ThreadPoolExecutor executor;
 
-  private boolean loadingStarted;
-  private boolean loadingStopped;
+  /** The number of requests made so far. */
+  private long sequence;
 
-  public ImageLoader(final ImageLoaderListener... listeners) {
+  /** The latest request (the only one the listeners are notified for). */
+  private ImageLoaderRequest request;
+
+  private volatile ImageLoaderPrefetcher prefetcher;
+
+  private volatile boolean compactImages = true;
 
+  public ImageLoader(final ImageLoaderListener... listeners) {
     this.listeners = listeners;
+  }
 
-    thread = new Thread(this);
-    thread.setDaemon(true);
+  /**
+   * Sets the prefetcher used to decode ahead of time the neighbors of the loaded images (the sequence of files must be
+   * supplied to the prefetcher, see {@link ImageLoaderPrefetcher#setFiles(java.util.List)}).
+   * 
+   * @param prefetcher
+   *          the prefetcher, or <code>null</code> for none
+   */
+  public void setPrefetcher(final ImageLoaderPrefetcher prefetcher) {
+    this.prefetcher = prefetcher;
   }
 
-  public void stopThread() {
+  public ImageLoaderPrefetcher getPrefetcher() {
+    return prefetcher;
+  }
 
-    threadStopped = true;
+  /**
+   * Sets whether the images without alpha are decoded in a compact form (3 bytes per pixel, see
+   * {@link #getCompactReadParam(ImageReader)}), enabled by default.
+   * 
+   * @param compactImages
+   *          <code>true</code> to decode the images in a compact form
+   */
+  public void setCompactImages(final boolean compactImages) {
+    this.compactImages = compactImages;
+  }
 
-    synchronized (this) {
-      notifyAll();
-    }
+  public boolean isCompactImages() {
+    return compactImages;
   }
 
-  public void startLoading(File file) {
+  /**
+   * Requests the image from the specified file, superseding (cancelling) the previous request.
+   * 
+   * @param file
+   *          the file
+   * 
+   * @return the handle of the request
+   */
+  public synchronized ImageLoaderRequest load(final File file) {
+
+    if (request != null) {
+      request.cancel(true);
+    }
+
+    if (executor == null || executor.isShutdown()) {
 
-    if (!thread.isAlive()) {
-      synchronized (thread) {
-        if (!thread.isAlive()) {
-          threadStopped = false;
-          thread.start();
+      executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r, ImageLoader.class.getSimpleName());
+          thread.setDaemon(true);
+          return thread;
         }
+      });
+    }
+
+    //
+    // the cancelled requests still waiting in the queue are no longer needed
+
+    executor.purge();
+
+    final ImageLoaderPrefetcher prefetcher = this.prefetcher;
+
+    if (prefetcher != null) {
+      prefetcher.setCurrentFile(file);
+    }
+
+    //
+    // the task needs its own handle (to check the cancellation, to abort the decoding)
+
+    final ImageLoaderRequest[] requestHolder = new ImageLoaderRequest[1];
+
+    request = new ImageLoaderRequest(new Callable<BufferedImage>() {
+      public BufferedImage call() throws Exception {
+        return loadImage(requestHolder[0]);
       }
+    }, file, ++sequence);
+
+    requestHolder[0] = request;
+
+    //
+    // (while holding the lock, so no notification of the previous request can come after)
+
+    for (ImageLoaderListener listener : listeners) {
+      listener.onLoadRequested(file);
+    }
+
+    executor.execute(request);
+
+    ImageMetrics.getInstance().setImageLoaderQueueSize(executor.getQueue().size());
+
+    return request;
+  }
+
+  /**
+   * Returns the number of requests waiting to be loaded (not including the one being loaded).
+   * 
+   * @return the number of waiting requests
+   */
+  public synchronized int getQueueSize() {
+    return executor == null ? 0 : executor.getQueue().size();
+  }
+
+  /**
+   * Returns the latest request.
+   * 
+   * @return the latest request, or <code>null</code> if no image was requested
+   */
+  public synchronized ImageLoaderRequest getRequest() {
+    return request;
+  }
+
+  public void startLoading(final File file) {
+    load(file);
+  }
+
+  /**
+   * Requests again the image of the latest request (decoded again, not taken from the cache).
+   */
+  public synchronized void startReloading() {
+
+    if (request == null) {
+      return;
+    }
+
+    final ImageLoaderPrefetcher prefetcher = this.prefetcher;
+
+    if (prefetcher != null) {
+      prefetcher.getCache().remove(request.getFile());
     }
 
+    load(request.getFile());
+  }
+
+  /**
+   * Cancels the latest request.
+   */
+  public synchronized void stopLoading() {
+    if (request != null) {
+      request.cancel(true);
+    }
+  }
+
+  /**
+   * Cancels the latest request and stops the thread of the loader (started again by a new request).
+   */
+  public synchronized void stopThread() {
+
     stopLoading();
 
-    this.file = file;
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Loads the image of the request, on the thread of the loader.
+   */
+  private BufferedImage loadImage(final ImageLoaderRequest request) throws IOException, InterruptedException {
+
+    final File file = request.getFile();
+
+    ImageMetrics.getInstance().setImageLoaderQueueSize(getQueueSize());
+
+    fireStartLoading(request);
+
+    try {
 
-    synchronized (this) {
-      loadingStarted = true;
-      notifyAll();
+      final BufferedImage image = readCached(request);
+
+      fireImageLoaded(request, image);
+
+      return image;
+    }
+
+    catch (IOException | RuntimeException e) {
+
+      if (!request.isCancelled()) {
+        logger.warn("image could not be read from file: " + file, e);
+      }
+
+      fireImageError(request, e);
+
+      throw e;
+    }
+
+    //
+    // the file was truncated while mapped (see MappedImageInputStream)
+
+    catch (InternalError e) {
+
+      final IOException error = new IOException("the mapped file could not be read: " + file, e);
+
+      logger.warn("image could not be read from file: " + file, error);
+
+      fireImageError(request, error);
+
+      throw error;
     }
   }
 
-  public void startReloading() {
-    startLoading(file);
+  /**
+   * Reads the image from the cache of the prefetcher (waiting for the prefetch, if the image is being prefetched right
+   * now), or from the file (and puts it in the cache).
+   */
+  private BufferedImage readCached(final ImageLoaderRequest request) throws IOException, InterruptedException {
+
+    final ImageLoaderPrefetcher prefetcher = this.prefetcher;
+
+    if (prefetcher == null) {
+      return read(request);
+    }
+
+    prefetcher.waitFor(request.getFile());
+
+    BufferedImage image = prefetcher.getCache().get(request.getFile());
+
+    if (image == null) {
+
+      image = read(request);
+
+      //
+      // an aborted decoding returns a partially decoded image
+
+      if (!request.isCancelled()) {
+        prefetcher.getCache().put(request.getFile(), image);
+      }
+    }
+
+    return image;
   }
 
-  public void stopLoading() {
+  /**
+   * Reads the image, reporting the progress to the listeners.
+   */
+  private BufferedImage read(final ImageLoaderRequest request) throws IOException {
+
+    final File file = request.getFile();
 
-    loadingStopped = true;
+    final ImageInputStream stream = MappedImageInputStream.open(file);
+
+    if (stream == null) {
+      throw new IOException("the file could not be opened: " + file);
+    }
+
+    try {
+
+      final Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+
+      if (!readers.hasNext()) {
+        throw new IOException("no reader found for the image: " + file);
+      }
+
+      final ImageReader reader = readers.next();
 
-    if (stream != null) {
+      try {
+
+        reader.setInput(stream, true, true);
+
+        //
+        // the embedded thumbnail, as the first preview
+
+        if ("jpeg".equalsIgnoreCase(reader.getFormatName())) {
+
+          final ImageExif exif = ImageExif.read(file);
+
+          if (exif != null && exif.getThumbnail() != null) {
+
+            final BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(exif.getThumbnail()));
+
+            if (thumbnail != null) {
+              fireImagePreview(request, thumbnail, reader.getWidth(0), reader.getHeight(0));
+            }
+          }
+        }
+
+        //
+        // then the image being decoded
+
+        final ProgressListener progressListener = new ProgressListener(request);
+        reader.addIIOReadUpdateListener(progressListener);
+        reader.addIIOReadProgressListener(progressListener);
+
+        request.setReader(reader);
+
+        final ImageMetrics metrics = ImageMetrics.getInstance();
+        final long startTime = metrics.startTime();
+
+        final BufferedImage image;
+
+        if (compactImages) {
+          image = toCompactImage(reader.read(0, getCompactReadParam(reader)));
+        } else {
+          image = reader.read(0);
+        }
+
+        //
+        // (an aborted decoding is not measured)
+
+        if (!request.isCancelled()) {
+          metrics.decodeFinished(startTime);
+        }
+
+        return image;
+      }
+
+      finally {
+        request.setReader(null);
+        reader.dispose();
+      }
+    }
+
+    finally {
       try {
         stream.close();
       } catch (IOException e) {
-        logger.warn("image stream could not be closed: " + file, e);
+        logger.warn("stream could not be closed: " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the parameters to decode the (first) image in a compact form: if the image has no alpha and would be
+   * decoded to more than 3 bytes per pixel (like 16 bits per sample, or a pixel packed in an int), the destination is
+   * a {@link BufferedImage#TYPE_3BYTE_BGR} image (if supported by the reader, see also
+   * {@link #toCompactImage(BufferedImage)}). Otherwise the default parameters.
+   * 
+   * @param reader
+   *          the reader, with the input already set
+   * 
+   * @return the parameters
+   * 
+   * @throws IOException
+   *           if an error occurs while reading the type of the image
+   */
+  static ImageReadParam getCompactReadParam(final ImageReader reader) throws IOException {
+
+    final ImageReadParam param = reader.getDefaultReadParam();
+
+    final ImageTypeSpecifier rawType = reader.getRawImageType(0);
+
+    if (rawType == null || rawType.getColorModel().hasAlpha() || rawType.getNumBands() < 3) {
+      return param;
+    }
+
+    //
+    // the size of a pixel (a 1x1 image of the same type)
+
+    if (ImageLoaderCache.getBytes(rawType.createBufferedImage(1, 1)) <= 3) {
+      return param;
+    }
+
+    for (Iterator<ImageTypeSpecifier> i = reader.getImageTypes(0); i.hasNext();) {
+
+      final ImageTypeSpecifier type = i.next();
+
+      if (type.getBufferedImageType() == BufferedImage.TYPE_3BYTE_BGR) {
+        param.setDestinationType(type);
+        break;
       }
     }
+
+    return param;
   }
 
-  @Override
-  public void run() {
+  /**
+   * Converts the image to a compact form ({@link BufferedImage#TYPE_3BYTE_BGR}), if it has no alpha and more than 3
+   * bytes per pixel (for the images the reader could not decode in a compact form, see
+   * {@link #getCompactReadParam(ImageReader)}).
+   * 
+   * @param image
+   *          the image
+   * 
+   * @return the compact image, or the image itself if already compact (or with alpha)
+   */
+  static BufferedImage toCompactImage(final BufferedImage image) {
+
+    if (image.getType() == BufferedImage.TYPE_3BYTE_BGR || image.getColorModel().hasAlpha() || image.getColorModel().getNumComponents() < 3) {
+      return image;
+    }
+
+    if (ImageLoaderCache.getBytes(image) <= 3L * image.getWidth() * image.getHeight()) {
+      return image;
+    }
 
-    while (!threadStopped) {
+    final BufferedImage compactImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
 
+    final Graphics2D g = compactImage.createGraphics();
+
+    try {
+      g.drawImage(image, 0, 0, null);
+    }
+
+    finally {
+      g.dispose();
+    }
+
+    return compactImage;
+  }
+
+  //
+  // the notifications: delivered while holding the lock, and only for the latest request
+  // (so none is delivered for a request after it was superseded)
+
+  private boolean isLatest(final ImageLoaderRequest request) {
+    return request == this.request && !request.isCancelled();
+  }
+
+  private synchronized void fireStartLoading(final ImageLoaderRequest request) {
+    if (isLatest(request)) {
       for (ImageLoaderListener listener : listeners) {
-        listener.onStartLoading(file);
+        listener.onStartLoading(request.getFile());
       }
+    }
+  }
 
-      loadingStarted = false;
-      loadingStopped = false;
+  private synchronized void fireImagePreview(final ImageLoaderRequest request, final BufferedImage image, final int imageWidth, final int imageHeight) {
+    if (isLatest(request)) {
+      for (ImageLoaderListener listener : listeners) {
+        listener.onImagePreview(request.getFile(), image, imageWidth, imageHeight);
+      }
+    }
+  }
 
-      BufferedImage image;
+  private synchronized void fireImageUpdated(final ImageLoaderRequest request, final BufferedImage image, final Rectangle region) {
+    if (isLatest(request)) {
+      for (ImageLoaderListener listener : listeners) {
+        listener.onImageUpdated(request.getFile(), image, region);
+      }
+    }
+  }
 
-      try {
+  private synchronized void fireImageProgress(final ImageLoaderRequest request, final float percentageDone) {
+    if (isLatest(request)) {
+      for (ImageLoaderListener listener : listeners) {
+        listener.onImageProgress(request.getFile(), percentageDone);
+      }
+    }
+  }
 
-        stream = new FileInputStream(file);
-        image = ImageUtils.read(stream);
+  private synchronized void fireImageLoaded(final ImageLoaderRequest request, final BufferedImage image) {
+    if (isLatest(request)) {
+      for (ImageLoaderListener listener : listeners) {
+        listener.onImageLoaded(request.getFile(), image);
+      }
+    }
+  }
 
-        for (ImageLoaderListener listener : listeners) {
+  private synchronized void fireImageError(final ImageLoaderRequest request, final Throwable t) {
+    if (isLatest(request)) {
+      for (ImageLoaderListener listener : listeners) {
+        listener.onImageError(request.getFile(), t);
+      }
+    }
+  }
 
-          if (loadingStopped) {
-            break;
-          }
+  /**
+   * Reports the progress of the decoding to the listeners (the preview, the updated regions, the percentage).
+   */
+  private class ProgressListener implements IIOReadUpdateListener, IIOReadProgressListener {
 
-          listener.onImageLoaded(file, image);
-        }
+    private final ImageLoaderRequest request;
+
+    private BufferedImage previewImage;
+
+    /** The region updated since the last report, if any. */
+    private Rectangle region;
+    private long regionTime;
+
+    public ProgressListener(final ImageLoaderRequest request) {
+      this.request = request;
+    }
+
+    private void fireImagePreview(final BufferedImage image) {
+
+      if (image == previewImage) {
+        return;
       }
 
-      catch (IOException e) {
+      previewImage = image;
 
-        image = null;
+      ImageLoader.this.fireImagePreview(request, image, image.getWidth(), image.getHeight());
+    }
 
-        if (!loadingStopped) {
+    private void fireImageUpdated(final BufferedImage image) {
 
-          for (ImageLoaderListener listener : listeners) {
-            listener.onImageError(file, e);
-          }
+      if (region == null) {
+        return;
+      }
 
-          logger.warn("image could not be read from file: " + file, e);
-        }
+      ImageLoader.this.fireImageUpdated(request, image, region);
+
+      region = null;
+      regionTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public void passStarted(ImageReader source, BufferedImage theImage, int pass, int minPass, int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {
+      fireImagePreview(theImage);
+    }
+
+    @Override
+    public void imageUpdate(ImageReader source, BufferedImage theImage, int minX, int minY, int width, int height, int periodX, int periodY, int[] bands) {
+
+      if (request.isCancelled()) {
+        source.abort();
+        return;
       }
 
-      finally {
-        if (stream != null) {
-          try {
-            stream.close();
-          } catch (IOException e) {
-            logger.warn("stream could not be closed: " + file, e);
-          }
-        }
+      fireImagePreview(theImage);
+
+      final Rectangle updatedRegion = new Rectangle(minX, minY, width, height);
+
+      if (region == null) {
+        region = updatedRegion;
+      } else {
+        region.add(updatedRegion);
       }
 
-      synchronized (this) {
+      if (System.currentTimeMillis() - regionTime >= UPDATE_INTERVAL) {
+        fireImageUpdated(theImage);
+      }
+    }
 
-        if (loadingStarted) {
-          continue;
-        }
+    @Override
+    public void passComplete(ImageReader source, BufferedImage theImage) {
+      fireImageUpdated(theImage);
+    }
 
-        try {
-          wait();
-        } catch (InterruptedException e) {
-          logger.error("thread can't wait ???...", e);
-        }
+    @Override
+    public void imageProgress(ImageReader source, float percentageDone) {
+
+      //
+      // the decoding thread is the only one allowed to abort some readers (like the JPEG one)
+
+      if (request.isCancelled()) {
+        source.abort();
+        return;
       }
+
+      fireImageProgress(request, percentageDone);
     }
+
+    @Override
+    public void thumbnailPassStarted(ImageReader source, BufferedImage theThumbnail, int pass, int minPass, int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {}
+
+    @Override
+    public void thumbnailUpdate(ImageReader source, BufferedImage theThumbnail, int minX, int minY, int width, int height, int periodX, int periodY, int[] bands) {}
+
+    @Override
+    public void thumbnailPassComplete(ImageReader source, BufferedImage theThumbnail) {}
+
+    @Override
+    public void sequenceStarted(ImageReader source, int minIndex) {}
+
+    @Override
+    public void sequenceComplete(ImageReader source) {}
+
+    @Override
+    public void imageStarted(ImageReader source, int imageIndex) {}
+
+    @Override
+    public void imageComplete(ImageReader source) {}
+
+    @Override
+    public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {}
+
+    @Override
+    public void thumbnailProgress(ImageReader source, float percentageDone) {}
+
+    @Override
+    public void thumbnailComplete(ImageReader source) {}
+
+    @Override
+    public void readAborted(ImageReader source) {}
   }
+
 }
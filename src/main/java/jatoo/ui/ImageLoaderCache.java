@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache for the images decoded by {@link ImageLoader} (and by {@link ImageLoaderPrefetcher}).
+ * <p>
+ * The images are kept in a LRU (least recently used) order, the limit is the total size of the pixels (in bytes), not
+ * the number of images. An image is invalidated if its file was modified after it was decoded.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageLoaderCache {
+
+  /** The default limit: a quarter of the maximum memory. */
+  public static final long DEFAULT_MAX_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
+  private final LinkedHashMap<File, Entry> images = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long maxBytes;
+  private long bytes;
+
+  private long hits;
+  private long misses;
+
+  public ImageLoaderCache() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * Creates a cache.
+   * 
+   * @param maxBytes
+   *          the limit of the cache, as the total size of the pixels in bytes
+   */
+  public ImageLoaderCache(final long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public synchronized BufferedImage get(final File file) {
+
+    final Entry entry = images.get(file);
+
+    if (entry != null) {
+
+      if (entry.lastModified == file.lastModified()) {
+        hits++;
+        return entry.image;
+      }
+
+      images.remove(file);
+      bytes -= entry.bytes;
+    }
+
+    misses++;
+    return null;
+  }
+
+  /**
+   * Checks if the image is in the cache, without affecting the order or the counters.
+   * 
+   * @param file
+   *          the file
+   * 
+   * @return <code>true</code> if the image is in the cache
+   */
+  public synchronized boolean contains(final File file) {
+    return images.containsKey(file);
+  }
+
+  /**
+   * Puts the image in the cache, evicting the least recently used ones if needed. An image bigger than the limit is not
+   * cached.
+   * 
+   * @param file
+   *          the file
+   * @param image
+   *          the decoded image
+   */
+  public synchronized void put(final File file, final BufferedImage image) {
+
+    final Entry entry = new Entry(image, file.lastModified());
+
+    if (entry.bytes > maxBytes) {
+      return;
+    }
+
+    final Entry oldEntry = images.put(file, entry);
+
+    if (oldEntry != null) {
+      bytes -= oldEntry.bytes;
+    }
+
+    bytes += entry.bytes;
+
+    evict();
+  }
+
+  public synchronized void remove(final File file) {
+
+    final Entry entry = images.remove(file);
+
+    if (entry != null) {
+      bytes -= entry.bytes;
+    }
+  }
+
+  public synchronized void clear() {
+    images.clear();
+    bytes = 0;
+  }
+
+  public synchronized void setMaxBytes(final long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized int getSize() {
+    return images.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return getClass().getSimpleName() + " [size=" + images.size() + ", bytes=" + bytes + ", maxBytes=" + maxBytes + ", hits=" + hits + ", misses=" + misses + "]";
+  }
+
+  private void evict() {
+    for (Iterator<Map.Entry<File, Entry>> i = images.entrySet().iterator(); bytes > maxBytes && i.hasNext();) {
+      bytes -= i.next().getValue().bytes;
+      i.remove();
+    }
+  }
+
+  /**
+   * Returns the size (in bytes) of the pixels of the image.
+   * 
+   * @param image
+   *          the image
+   * 
+   * @return the size of the pixels
+   */
+  public static long getBytes(final BufferedImage image) {
+
+    final DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+
+    return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+  }
+
+  private static final class Entry {
+
+    private final BufferedImage image;
+    private final long lastModified;
+    private final long bytes;
+
+    private Entry(final BufferedImage image, final long lastModified) {
+      this.image = image;
+      this.lastModified = lastModified;
+      this.bytes = getBytes(image);
+    }
+  }
+
+}
@@ -16,9 +16,21 @@
 
 package jatoo.ui;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 
+/**
+ * The listener of {@link ImageLoader}. All the methods are called from the thread of the loader, and only for the
+ * latest request (see {@link ImageLoader#load(File)}).
+ * <p>
+ * Besides the final image (see {@link #onImageLoaded(File, BufferedImage)}), the loader reports the progress of the
+ * decoding: a preview as soon as possible (the embedded thumbnail and/or the image being decoded), then the regions
+ * of the image decoded so far. The progressive methods do nothing by default.
+ * <p>
+ * A listener handing the notifications over to another thread (like the event dispatch thread) should drop the ones
+ * handed over before the latest {@link #onLoadRequested(File)}: the request they belong to was superseded meanwhile.
+ */
 public interface ImageLoaderListener {
 
   abstract void onStartLoading(File file);
@@ -27,4 +39,67 @@ public interface ImageLoaderListener {
 
   abstract void onImageError(File file, Throwable t);
 
+  /**
+   * Called right away when a new image is requested (see {@link ImageLoader#load(File)}), from the thread requesting
+   * it (not from the thread of the loader): the notifications of the previous requests, if any, are obsolete from now
+   * on.
+   * 
+   * @param file
+   *          the requested file
+   */
+  default void onLoadRequested(File file) {}
+
+  /**
+   * Called (possibly more than once) with an image to be displayed until the final image is loaded: the thumbnail
+   * embedded in the file, if any, then the image being decoded (the same instance that will be reported as loaded,
+   * partially decoded, updated through {@link #onImageUpdated(File, BufferedImage, Rectangle)}).
+   * 
+   * @param file
+   *          the file being loaded
+   * @param image
+   *          the preview
+   */
+  default void onImagePreview(File file, BufferedImage image) {}
+
+  /**
+   * Same as {@link #onImagePreview(File, BufferedImage)}, with the size of the image being loaded: the preview can be
+   * smaller (for example the embedded thumbnail), and is better displayed at the size of the image. Calls
+   * {@link #onImagePreview(File, BufferedImage)} by default.
+   * 
+   * @param file
+   *          the file being loaded
+   * @param image
+   *          the preview
+   * @param imageWidth
+   *          the width of the image being loaded
+   * @param imageHeight
+   *          the height of the image being loaded
+   */
+  default void onImagePreview(File file, BufferedImage image, int imageWidth, int imageHeight) {
+    onImagePreview(file, image);
+  }
+
+  /**
+   * Called (at most every {@link ImageLoader#UPDATE_INTERVAL} milliseconds) when a region of the image being decoded
+   * was updated (for progressive images, a pass updates the whole image, at a better quality).
+   * 
+   * @param file
+   *          the file being loaded
+   * @param image
+   *          the image being decoded
+   * @param region
+   *          the region updated since the previous call
+   */
+  default void onImageUpdated(File file, BufferedImage image, Rectangle region) {}
+
+  /**
+   * Called with the (estimated) progress of the decoding.
+   * 
+   * @param file
+   *          the file being loaded
+   * @param percentageDone
+   *          the percentage of the decoding done so far, [0..100]
+   */
+  default void onImageProgress(File file, float percentageDone) {}
+
 }
@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Decodes ahead of time (in background) the neighbors of the current image from a sequence of files (for example
+ * {@link ImageFileList#getImages()}), into an {@link ImageLoaderCache}, so the next (or the previous) image is
+ * displayed right away.
+ * <p>
+ * The window (the number of neighbors on each side) is configurable, the neighbors in the direction of the navigation
+ * are decoded first. When the direction changes (or the current image jumps away) the prefetches no longer in the
+ * window are cancelled (the running one is aborted).
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageLoaderPrefetcher {
+
+  private final Log logger = LogFactory.getLog(getClass());
+
+  /** The default number of neighbors (on each side) to be prefetched. */
+  public static final int DEFAULT_WINDOW = 2;
+
+  private final ImageLoaderCache cache;
+
+  private List<File> files = new ArrayList<>();
+  private Map<File, Integer> indexes = new HashMap<>();
+
+  private int window = DEFAULT_WINDOW;
+
+  private int currentIndex = -1;
+  private int direction = 1;
+
+  /** The files waiting to be prefetched, in order. */
+  private final LinkedList<File> queue = new LinkedList<>();
+
+  /** The file being prefetched, and its reader (to be aborted). */
+  private File prefetchingFile;
+  private ImageReader prefetchingReader;
+  private volatile boolean prefetchingAborted;
+
+  private volatile boolean compactImages = true;
+
+  public ImageLoaderPrefetcher(final ImageLoaderCache cache) {
+
+    this.cache = cache;
+
+    final Thread thread = new Thread(new Runnable() {
+      public void run() {
+        prefetch();
+      }
+    }, getClass().getSimpleName());
+
+    thread.setDaemon(true);
+    thread.setPriority(Thread.NORM_PRIORITY - 1);
+    thread.start();
+  }
+
+  public ImageLoaderCache getCache() {
+    return cache;
+  }
+
+  public synchronized void setWindow(final int window) {
+    this.window = window;
+    updateQueue();
+  }
+
+  public synchronized int getWindow() {
+    return window;
+  }
+
+  /**
+   * Sets the sequence of files the neighbors are taken from.
+   * 
+   * @param files
+   *          the files, in the order of the navigation
+   */
+  public synchronized void setFiles(final List<File> files) {
+
+    final File currentFile = currentIndex == -1 ? null : this.files.get(currentIndex);
+
+    this.files = new ArrayList<>(files);
+    this.indexes = new HashMap<>();
+
+    for (int i = 0; i < this.files.size(); i++) {
+      indexes.put(this.files.get(i), i);
+    }
+
+    final Integer index = currentFile == null ? null : indexes.get(currentFile);
+    currentIndex = index == null ? -1 : index;
+
+    updateQueue();
+  }
+
+  /**
+   * Sets the current file (the one displayed): its neighbors are prefetched, in the direction of the navigation first.
+   * 
+   * @param file
+   *          the current file
+   */
+  public synchronized void setCurrentFile(final File file) {
+
+    final Integer index = indexes.get(file);
+
+    if (index == null) {
+      return;
+    }
+
+    if (currentIndex != -1 && index != currentIndex) {
+      direction = index > currentIndex ? 1 : -1;
+    }
+
+    currentIndex = index;
+
+    updateQueue();
+  }
+
+  /**
+   * Waits for the specified file, if it is being prefetched right now.
+   * 
+   * @param file
+   *          the file
+   * 
+   * @throws InterruptedException
+   *           if the thread was interrupted while waiting
+   */
+  public synchronized void waitFor(final File file) throws InterruptedException {
+    while (file.equals(prefetchingFile)) {
+      wait();
+    }
+  }
+
+  /**
+   * Sets whether the images without alpha are decoded in a compact form (see {@link ImageLoader#setCompactImages(boolean)}),
+   * enabled by default.
+   * 
+   * @param compactImages
+   *          <code>true</code> to decode the images in a compact form
+   */
+  public void setCompactImages(final boolean compactImages) {
+    this.compactImages = compactImages;
+  }
+
+  public boolean isCompactImages() {
+    return compactImages;
+  }
+
+  public synchronized int getQueueSize() {
+    return queue.size();
+  }
+
+  /**
+   * Computes the files to be prefetched (the ones from the window, not already cached, nearest first, the direction of
+   * the navigation first) and cancels the prefetch in progress if no longer needed. Must be called while holding the
+   * lock.
+   */
+  private void updateQueue() {
+
+    queue.clear();
+
+    if (currentIndex != -1) {
+      for (int i = 1; i <= window; i++) {
+        for (int side : new int[] { direction, -direction }) {
+
+          final int index = currentIndex + side * i;
+
+          if (index >= 0 && index < files.size() && !cache.contains(files.get(index))) {
+            queue.add(files.get(index));
+          }
+        }
+      }
+    }
+
+    //
+    // the prefetch in progress is cancelled only if no longer needed
+    // (not in the window and not the current file, which is probably waited for)
+
+    if (prefetchingFile != null && !queue.remove(prefetchingFile) && (currentIndex == -1 || !prefetchingFile.equals(files.get(currentIndex)))) {
+
+      prefetchingAborted = true;
+
+      if (prefetchingReader != null) {
+        try {
+          prefetchingReader.abort();
+        } catch (IllegalStateException e) {
+          // locked by the decoding thread, aborted on the next progress report
+        }
+      }
+    }
+
+    notifyAll();
+  }
+
+  /**
+   * The loop of the background thread.
+   */
+  private void prefetch() {
+
+    while (true) {
+
+      final File file;
+
+      synchronized (this) {
+
+        while (queue.isEmpty()) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+
+        file = queue.removeFirst();
+
+        if (cache.contains(file)) {
+          continue;
+        }
+
+        prefetchingFile = file;
+        prefetchingAborted = false;
+      }
+
+      ImageInputStream stream = null;
+      ImageReader reader = null;
+
+      try {
+
+        final long startTime = System.currentTimeMillis();
+
+        stream = ImageIO.createImageInputStream(file);
+
+        final Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+
+        if (readers == null || !readers.hasNext()) {
+          continue;
+        }
+
+        reader = readers.next();
+        reader.setInput(stream, true, true);
+        reader.addIIOReadProgressListener(new AbortListener());
+
+        synchronized (this) {
+          if (prefetchingAborted) {
+            continue;
+          }
+          prefetchingReader = reader;
+        }
+
+        final ImageMetrics metrics = ImageMetrics.getInstance();
+        final long metricsStartTime = metrics.startTime();
+
+        final BufferedImage image = compactImages ? ImageLoader.toCompactImage(reader.read(0, ImageLoader.getCompactReadParam(reader))) : reader.read(0);
+
+        //
+        // an aborted read returns a partially decoded image
+
+        synchronized (this) {
+          if (prefetchingAborted) {
+            continue;
+          }
+          cache.put(file, image);
+        }
+
+        metrics.decodeFinished(metricsStartTime);
+
+        if (logger.isDebugEnabled()) {
+          logger.debug("prefetched in " + (System.currentTimeMillis() - startTime) + " ms: " + file);
+        }
+      }
+
+      catch (IOException | RuntimeException e) {
+        logger.debug("the image could not be prefetched: " + file, e);
+      }
+
+      //
+      // (like an OutOfMemoryError for a huge image) the thread goes on with the next file
+
+      catch (Error e) {
+        logger.warn("the image could not be prefetched: " + file, e);
+      }
+
+      finally {
+
+        if (reader != null) {
+          reader.dispose();
+        }
+
+        if (stream != null) {
+          try {
+            stream.close();
+          } catch (IOException e) {
+            logger.debug("the stream could not be closed: " + file, e);
+          }
+        }
+
+        synchronized (this) {
+          prefetchingFile = null;
+          prefetchingReader = null;
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Aborts the decoding from the decoding thread (the only one allowed to abort some readers, like the JPEG one).
+   */
+  private class AbortListener implements IIOReadProgressListener {
+
+    @Override
+    public void imageProgress(ImageReader source, float percentageDone) {
+      if (prefetchingAborted) {
+        source.abort();
+      }
+    }
+
+    @Override
+    public void sequenceStarted(ImageReader source, int minIndex) {}
+
+    @Override
+    public void sequenceComplete(ImageReader source) {}
+
+    @Override
+    public void imageStarted(ImageReader source, int imageIndex) {}
+
+    @Override
+    public void imageComplete(ImageReader source) {}
+
+    @Override
+    public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {}
+
+    @Override
+    public void thumbnailProgress(ImageReader source, float percentageDone) {}
+
+    @Override
+    public void thumbnailComplete(ImageReader source) {}
+
+    @Override
+    public void readAborted(ImageReader source) {}
+  }
+
+}
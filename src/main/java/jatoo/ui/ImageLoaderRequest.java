@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.ImageReader;
+
+/**
+ * The handle of an image requested from an {@link ImageLoader}: a {@link java.util.concurrent.Future} of the loaded
+ * image. Cancelling the request also aborts the decoding in progress (see {@link ImageReader#abort()}), so a
+ * superseded request stops using the CPU right away.
+ * <p>
+ * Some readers (like the JPEG one) can not be aborted from another thread while decoding, these are aborted by the
+ * loader itself, from the decoding thread, on the next progress report.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageLoaderRequest extends FutureTask<BufferedImage> {
+
+  private final File file;
+  private final long sequenceNumber;
+
+  /** The reader decoding the image, if the decoding is in progress. */
+  private volatile ImageReader reader;
+
+  ImageLoaderRequest(final Callable<BufferedImage> callable, final File file, final long sequenceNumber) {
+    super(callable);
+    this.file = file;
+    this.sequenceNumber = sequenceNumber;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the sequence number of this request: the requests of a loader are numbered in the order they were made.
+   * 
+   * @return the sequence number
+   */
+  public long getSequenceNumber() {
+    return sequenceNumber;
+  }
+
+  /**
+   * Sets (or clears) the reader decoding the image, aborted right away if the request was already cancelled.
+   */
+  void setReader(final ImageReader reader) {
+
+    this.reader = reader;
+
+    if (reader != null && isCancelled()) {
+      reader.abort();
+    }
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterruptIfRunning) {
+
+    final boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+    final ImageReader reader = this.reader;
+
+    if (reader != null) {
+      try {
+        reader.abort();
+      } catch (IllegalStateException e) {
+        // locked by the decoding thread, aborted on the next progress report
+      }
+    }
+
+    return cancelled;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " [file=" + file + ", sequenceNumber=" + sequenceNumber + "]";
+  }
+
+}
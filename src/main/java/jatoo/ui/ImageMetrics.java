@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The (opt-in) metrics of the image rendering hot paths: the paint time of each frame and the pixels scaled meanwhile
+ * ({@link ImageCanvas}), the relayout cost of a zoom ({@link ImageViewer}), the decode latency ({@link ImageLoader},
+ * {@link ImageLoaderPrefetcher}), and the depth of the loading queues ({@link ImageLoader},
+ * {@link ImageFileListIcons}).
+ * <p>
+ * Disabled by default, nothing is measured until enabled: from the code (see {@link #setEnabled(boolean)}), from the
+ * command line (with the <code>-Djatoo.ui.metrics=true</code> system property), or from a JMX console (once
+ * registered). Once enabled, the metrics are exported through JMX (see {@link #OBJECT_NAME}) and can be painted over
+ * the image (see {@link ImageCanvas#setMetricsOverlay(boolean)}).
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public final class ImageMetrics implements ImageMetricsMBean {
+
+  private static final Log logger = LogFactory.getLog(ImageMetrics.class);
+
+  /** The name of the MBean. */
+  public static final String OBJECT_NAME = "jatoo.ui:type=ImageMetrics";
+
+  /** The system property that enables the metrics from the start. */
+  public static final String ENABLED_PROPERTY = "jatoo.ui.metrics";
+
+  /** The upper bounds (exclusive, in milliseconds) of the buckets of the decode latency histogram. */
+  private static final long[] DECODE_LATENCY_BOUNDS = { 10, 25, 50, 100, 250, 500, 1000, 2500 };
+
+  private static final ImageMetrics INSTANCE = new ImageMetrics();
+
+  static {
+    if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+      INSTANCE.setEnabled(true);
+    }
+  }
+
+  /** Read on every hot path call, without locking. */
+  private volatile boolean enabled;
+
+  private boolean registered;
+
+  private long paintCount;
+  private long paintTime;
+  private long paintTimeMax;
+  private long lastPaintTime;
+
+  /** The pixels scaled since the last frame was painted. */
+  private long frameScaledPixels;
+  private long lastScaledPixels;
+  private long scaledPixels;
+
+  private long zoomCount;
+  private long zoomTime;
+  private long zoomTimeMax;
+  private long lastZoomTime;
+
+  private long decodeCount;
+  private long decodeTime;
+  private long decodeTimeMax;
+  private final long[] decodeLatencyHistogram = new long[DECODE_LATENCY_BOUNDS.length + 1];
+
+  private int imageLoaderQueueSize;
+  private int imageLoaderQueueSizeMax;
+
+  private int iconsQueueSize;
+  private int iconsQueueSizeMax;
+
+  private ImageMetrics() {}
+
+  public static ImageMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enables (or disables) the metrics. On the first enabling, the MBean is also registered with the platform MBean
+   * server (and stays registered, so the metrics can be enabled again from a JMX console).
+   * 
+   * @param enabled
+   *          <code>true</code> to collect the metrics
+   */
+  @Override
+  public synchronized void setEnabled(final boolean enabled) {
+
+    this.enabled = enabled;
+
+    if (enabled && !registered) {
+
+      registered = true;
+
+      try {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(OBJECT_NAME);
+
+        if (!server.isRegistered(name)) {
+          server.registerMBean(this, name);
+        }
+      }
+
+      catch (JMException | SecurityException e) {
+        logger.warn("the metrics could not be registered as MBean: " + OBJECT_NAME, e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void reset() {
+
+    paintCount = paintTime = paintTimeMax = lastPaintTime = 0;
+    frameScaledPixels = lastScaledPixels = scaledPixels = 0;
+    zoomCount = zoomTime = zoomTimeMax = lastZoomTime = 0;
+    decodeCount = decodeTime = decodeTimeMax = 0;
+    Arrays.fill(decodeLatencyHistogram, 0);
+    imageLoaderQueueSizeMax = imageLoaderQueueSize;
+    iconsQueueSizeMax = iconsQueueSize;
+  }
+
+  //
+  // --- Hot paths: nothing but a volatile read while disabled
+
+  /**
+   * Returns the start time of a measurement, to be passed to one of the <code>...Finished</code> methods.
+   * 
+   * @return the current time (in nanoseconds), or <code>0</code> if the metrics are disabled
+   */
+  public long startTime() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the paint of a frame.
+   * 
+   * @param startTime
+   *          the start time (see {@link #startTime()})
+   */
+  public void paintFinished(final long startTime) {
+
+    if (startTime == 0) {
+      return;
+    }
+
+    final long time = System.nanoTime() - startTime;
+
+    synchronized (this) {
+
+      paintCount++;
+      paintTime += time;
+      paintTimeMax = Math.max(paintTimeMax, time);
+      lastPaintTime = time;
+
+      lastScaledPixels = frameScaledPixels;
+      frameScaledPixels = 0;
+    }
+  }
+
+  /**
+   * Records pixels scaled while painting (counted in the frame being painted).
+   * 
+   * @param pixels
+   *          the number of pixels (of the scaled image)
+   */
+  public void addScaledPixels(final long pixels) {
+
+    if (!enabled) {
+      return;
+    }
+
+    synchronized (this) {
+      frameScaledPixels += pixels;
+      scaledPixels += pixels;
+    }
+  }
+
+  /**
+   * Records pixels scaled straight to the screen while painting: only the part inside the clip is counted.
+   * 
+   * @param g
+   *          the graphics the pixels are painted on
+   * @param x
+   *          the x coordinate of the scaled image
+   * @param y
+   *          the y coordinate of the scaled image
+   * @param width
+   *          the width of the scaled image
+   * @param height
+   *          the height of the scaled image
+   */
+  public void addScaledPixels(final Graphics g, final int x, final int y, final int width, final int height) {
+
+    if (!enabled) {
+      return;
+    }
+
+    final Rectangle clip = g.getClipBounds();
+    final Rectangle bounds = clip == null ? new Rectangle(x, y, width, height) : clip.intersection(new Rectangle(x, y, width, height));
+
+    if (!bounds.isEmpty()) {
+      addScaledPixels((long) bounds.width * bounds.height);
+    }
+  }
+
+  /**
+   * Records the relayout of a zoom.
+   * 
+   * @param startTime
+   *          the start time (see {@link #startTime()})
+   */
+  public void zoomFinished(final long startTime) {
+
+    if (startTime == 0) {
+      return;
+    }
+
+    final long time = System.nanoTime() - startTime;
+
+    synchronized (this) {
+      zoomCount++;
+      zoomTime += time;
+      zoomTimeMax = Math.max(zoomTimeMax, time);
+      lastZoomTime = time;
+    }
+  }
+
+  /**
+   * Records the decoding of an image.
+   * 
+   * @param startTime
+   *          the start time (see {@link #startTime()})
+   */
+  public void decodeFinished(final long startTime) {
+
+    if (startTime == 0) {
+      return;
+    }
+
+    final long time = System.nanoTime() - startTime;
+    final long millis = time / 1000000;
+
+    int bucket = 0;
+
+    while (bucket < DECODE_LATENCY_BOUNDS.length && millis >= DECODE_LATENCY_BOUNDS[bucket]) {
+      bucket++;
+    }
+
+    synchronized (this) {
+      decodeCount++;
+      decodeTime += time;
+      decodeTimeMax = Math.max(decodeTimeMax, time);
+      decodeLatencyHistogram[bucket]++;
+    }
+  }
+
+  public void setImageLoaderQueueSize(final int size) {
+
+    if (!enabled) {
+      return;
+    }
+
+    synchronized (this) {
+      imageLoaderQueueSize = size;
+      imageLoaderQueueSizeMax = Math.max(imageLoaderQueueSizeMax, size);
+    }
+  }
+
+  public void setIconsQueueSize(final int size) {
+
+    if (!enabled) {
+      return;
+    }
+
+    synchronized (this) {
+      iconsQueueSize = size;
+      iconsQueueSizeMax = Math.max(iconsQueueSizeMax, size);
+    }
+  }
+
+  //
+  // --- Getters
+
+  @Override
+  public synchronized long getPaintCount() {
+    return paintCount;
+  }
+
+  @Override
+  public synchronized double getLastPaintTime() {
+    return toMillis(lastPaintTime);
+  }
+
+  @Override
+  public synchronized double getPaintTimeAverage() {
+    return paintCount == 0 ? 0 : toMillis(paintTime / paintCount);
+  }
+
+  @Override
+  public synchronized double getPaintTimeMax() {
+    return toMillis(paintTimeMax);
+  }
+
+  @Override
+  public synchronized long getLastScaledPixels() {
+    return lastScaledPixels;
+  }
+
+  @Override
+  public synchronized long getScaledPixels() {
+    return scaledPixels;
+  }
+
+  @Override
+  public synchronized long getZoomCount() {
+    return zoomCount;
+  }
+
+  @Override
+  public synchronized double getLastZoomTime() {
+    return toMillis(lastZoomTime);
+  }
+
+  @Override
+  public synchronized double getZoomTimeAverage() {
+    return zoomCount == 0 ? 0 : toMillis(zoomTime / zoomCount);
+  }
+
+  @Override
+  public synchronized double getZoomTimeMax() {
+    return toMillis(zoomTimeMax);
+  }
+
+  @Override
+  public synchronized long getDecodeCount() {
+    return decodeCount;
+  }
+
+  @Override
+  public synchronized double getDecodeTimeAverage() {
+    return decodeCount == 0 ? 0 : toMillis(decodeTime / decodeCount);
+  }
+
+  @Override
+  public synchronized double getDecodeTimeMax() {
+    return toMillis(decodeTimeMax);
+  }
+
+  @Override
+  public long[] getDecodeLatencyBounds() {
+    return DECODE_LATENCY_BOUNDS.clone();
+  }
+
+  @Override
+  public synchronized long[] getDecodeLatencyHistogram() {
+    return decodeLatencyHistogram.clone();
+  }
+
+  @Override
+  public synchronized int getImageLoaderQueueSize() {
+    return imageLoaderQueueSize;
+  }
+
+  @Override
+  public synchronized int getImageLoaderQueueSizeMax() {
+    return imageLoaderQueueSizeMax;
+  }
+
+  @Override
+  public synchronized int getIconsQueueSize() {
+    return iconsQueueSize;
+  }
+
+  @Override
+  public synchronized int getIconsQueueSizeMax() {
+    return iconsQueueSizeMax;
+  }
+
+  @Override
+  public synchronized String getSummary() {
+    return String.format(Locale.US, "paint %.1f ms (avg %.1f, max %.1f), scaled %d px, zoom %.1f ms (avg %.1f), decode avg %.0f ms (max %.0f, n %d), queues %d/%d", getLastPaintTime(), getPaintTimeAverage(), getPaintTimeMax(), lastScaledPixels, getLastZoomTime(), getZoomTimeAverage(), getDecodeTimeAverage(), getDecodeTimeMax(), decodeCount, imageLoaderQueueSize, iconsQueueSize);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " [" + getSummary() + "]";
+  }
+
+  private static double toMillis(final long nanos) {
+    return nanos / 1000000.0;
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+/**
+ * The management interface of {@link ImageMetrics}, as exported through JMX. The times are in milliseconds.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public interface ImageMetricsMBean {
+
+  boolean isEnabled();
+
+  void setEnabled(boolean enabled);
+
+  /**
+   * Clears all the collected metrics.
+   */
+  void reset();
+
+  long getPaintCount();
+
+  double getLastPaintTime();
+
+  double getPaintTimeAverage();
+
+  double getPaintTimeMax();
+
+  /**
+   * Returns the number of pixels scaled while painting the last frame.
+   * 
+   * @return the number of pixels
+   */
+  long getLastScaledPixels();
+
+  /**
+   * Returns the total number of pixels scaled while painting.
+   * 
+   * @return the number of pixels
+   */
+  long getScaledPixels();
+
+  long getZoomCount();
+
+  double getLastZoomTime();
+
+  double getZoomTimeAverage();
+
+  double getZoomTimeMax();
+
+  long getDecodeCount();
+
+  double getDecodeTimeAverage();
+
+  double getDecodeTimeMax();
+
+  /**
+   * Returns the upper bounds (exclusive, in milliseconds) of the buckets of the decode latency histogram, the last
+   * bucket has no upper bound.
+   * 
+   * @return the upper bounds of the buckets
+   */
+  long[] getDecodeLatencyBounds();
+
+  /**
+   * Returns the number of decodes in each bucket of the histogram (see {@link #getDecodeLatencyBounds()}).
+   * 
+   * @return the number of decodes in each bucket
+   */
+  long[] getDecodeLatencyHistogram();
+
+  int getImageLoaderQueueSize();
+
+  int getImageLoaderQueueSizeMax();
+
+  int getIconsQueueSize();
+
+  int getIconsQueueSizeMax();
+
+  /**
+   * Returns a short summary of the metrics, on a single line.
+   * 
+   * @return the summary
+   */
+  String getSummary();
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A multi resolution (mipmap) pyramid of an image: the image itself, then the image halved, and halved again, and so
+ * on. Painting a zoomed out image from the nearest (bigger) level scales at most by half, so the cost is proportional
+ * to the painted pixels (not to the image pixels) and there is no aliasing.
+ * <p>
+ * Each level is built from the previous one, halved with bilinear interpolation (at exactly half, every pixel is the
+ * average of 2x2 pixels).
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImagePyramid {
+
+  /** The default minimum size (width or height) of the levels. */
+  public static final int DEFAULT_MIN_SIZE = 64;
+
+  private final BufferedImage[] levels;
+
+  /**
+   * Builds the pyramid of the specified image (the levels are built until the width or the height gets smaller than
+   * {@link #DEFAULT_MIN_SIZE}). It takes some time, so it should not be called on the event dispatch thread.
+   * 
+   * @param image
+   *          the image
+   */
+  public ImagePyramid(final BufferedImage image) {
+    this(image, DEFAULT_MIN_SIZE);
+  }
+
+  /**
+   * Builds the pyramid of the specified image. It takes some time, so it should not be called on the event dispatch
+   * thread.
+   * 
+   * @param image
+   *          the image
+   * @param minSize
+   *          the levels are built until the width or the height gets smaller than this size
+   */
+  public ImagePyramid(final BufferedImage image, final int minSize) {
+
+    final List<BufferedImage> levels = new ArrayList<>();
+    levels.add(image);
+
+    BufferedImage level = image;
+
+    while (level.getWidth() / 2 >= minSize && level.getHeight() / 2 >= minSize && !Thread.currentThread().isInterrupted()) {
+      level = halve(level);
+      levels.add(level);
+    }
+
+    this.levels = levels.toArray(new BufferedImage[levels.size()]);
+  }
+
+  /**
+   * Returns the original image (the first level).
+   * 
+   * @return the image
+   */
+  public BufferedImage getImage() {
+    return levels[0];
+  }
+
+  public int getLevelsCount() {
+    return levels.length;
+  }
+
+  public BufferedImage getLevel(final int index) {
+    return levels[index];
+  }
+
+  /**
+   * Returns the level to be used to paint the image at the specified size: the smallest one not smaller than the
+   * size (so the level is scaled down, by at most a half, never up).
+   * 
+   * @param width
+   *          the painted width
+   * @param height
+   *          the painted height
+   * 
+   * @return the level
+   */
+  public BufferedImage getLevel(final int width, final int height) {
+
+    for (int i = levels.length - 1; i > 0; i--) {
+      if (levels[i].getWidth() >= width && levels[i].getHeight() >= height) {
+        return levels[i];
+      }
+    }
+
+    return levels[0];
+  }
+
+  private static BufferedImage halve(final BufferedImage image) {
+
+    final int width = image.getWidth() / 2;
+    final int height = image.getHeight() / 2;
+
+    //
+    // the levels without alpha are compact (3 bytes per pixel), only the tiles / the scaled images painted from them
+    // are in the (faster to paint) int types
+
+    final BufferedImage level = new BufferedImage(width, height, image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_3BYTE_BGR);
+
+    final Graphics2D g = level.createGraphics();
+
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.drawImage(image, 0, 0, width, height, null);
+    }
+
+    finally {
+      g.dispose();
+    }
+
+    return level;
+  }
+
+}
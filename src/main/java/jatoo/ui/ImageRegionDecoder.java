@@ -0,0 +1,602 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Decodes only the visible regions of an image file, for images too large to be decoded (and kept) whole: the file is
+ * opened once, the reader is kept, and the tiles intersecting the visible region (plus a margin) are decoded on
+ * demand, in background (see {@link ImageReadParam#setSourceRegion(Rectangle)}), subsampled for the zoomed out views.
+ * <p>
+ * The decoded tiles are kept in a LRU (least recently used) order, the limit is the total size of the pixels (in
+ * bytes). Until a tile is decoded, its region is painted from the overview, a small version of the whole image,
+ * decoded (subsampled) when the file is opened.
+ * <p>
+ * The reader is used only by the decoding thread; {@link #paint(Graphics2D, int, int, int, int)} must be used only on
+ * the event dispatch thread.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class ImageRegionDecoder implements Closeable {
+
+  private final Log logger = LogFactory.getLog(getClass());
+
+  /** The default size of the tiles (in decoded pixels). */
+  public static final int DEFAULT_TILE_SIZE = 512;
+
+  /** The default limit: 128 MB of pixels. */
+  public static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+
+  /** The default (maximum) size of the overview. */
+  public static final int DEFAULT_OVERVIEW_SIZE = 1024;
+
+  /** The maximum number of tiles (on each side) decoded at once. */
+  private static final int MAX_BATCH = 4;
+
+  private final File file;
+
+  private final ImageInputStream stream;
+  private final ImageReader reader;
+
+  private final int width;
+  private final int height;
+
+  private final BufferedImage overview;
+
+  private final int tileSize;
+
+  private final LinkedHashMap<Key, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+
+  private long maxBytes = DEFAULT_MAX_BYTES;
+  private long bytes;
+
+  /** The tiles waiting to be decoded, in order (the visible ones first, then the margin). */
+  private final LinkedHashSet<Key> queue = new LinkedHashSet<>();
+
+  private volatile Runnable listener;
+
+  private volatile boolean closed;
+
+  /**
+   * Opens the file, reads the size and decodes the overview. It takes some time, so it should not be called on the
+   * event dispatch thread.
+   * 
+   * @param file
+   *          the image file
+   * 
+   * @throws IOException
+   *           if the file could not be opened or decoded
+   */
+  public ImageRegionDecoder(final File file) throws IOException {
+    this(file, DEFAULT_TILE_SIZE, DEFAULT_OVERVIEW_SIZE);
+  }
+
+  /**
+   * Opens the file, reads the size and decodes the overview. It takes some time, so it should not be called on the
+   * event dispatch thread.
+   * 
+   * @param file
+   *          the image file
+   * @param tileSize
+   *          the size of the tiles (in decoded pixels)
+   * @param overviewSize
+   *          the (maximum) size of the overview
+   * 
+   * @throws IOException
+   *           if the file could not be opened or decoded
+   */
+  public ImageRegionDecoder(final File file, final int tileSize, final int overviewSize) throws IOException {
+
+    if (tileSize < 1) {
+      throw new IllegalArgumentException("the size of the tiles must be positive: " + tileSize);
+    }
+
+    this.file = file;
+    this.tileSize = tileSize;
+
+    stream = ImageIO.createImageInputStream(file);
+
+    if (stream == null) {
+      throw new IOException("the file could not be opened: " + file);
+    }
+
+    try {
+
+      final Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+
+      if (!readers.hasNext()) {
+        throw new IOException("no reader found for the image: " + file);
+      }
+
+      reader = readers.next();
+
+      //
+      // random access (the regions are decoded in any order)
+
+      reader.setInput(stream, false, true);
+
+      width = reader.getWidth(0);
+      height = reader.getHeight(0);
+
+      //
+      // the overview
+
+      final int subsampling = Math.max(1, (Math.max(width, height) + overviewSize - 1) / overviewSize);
+
+      final ImageReadParam param = reader.getDefaultReadParam();
+      param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+      overview = UIUtils.toCompatibleImage(reader.read(0, param));
+    }
+
+    catch (IOException | RuntimeException e) {
+      stream.close();
+      throw e;
+    }
+
+    final Thread thread = new Thread(new Runnable() {
+      public void run() {
+        decode();
+      }
+    }, getClass().getSimpleName());
+
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the width of the (whole) image.
+   * 
+   * @return the width of the image
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the (whole) image.
+   * 
+   * @return the height of the image
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the overview: a small version of the whole image.
+   * 
+   * @return the overview
+   */
+  public BufferedImage getOverview() {
+    return overview;
+  }
+
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  public synchronized void setMaxBytes(final long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized int getSize() {
+    return tiles.size();
+  }
+
+  public synchronized int getQueueSize() {
+    return queue.size();
+  }
+
+  /**
+   * Sets the listener notified (from the decoding thread) every time some tiles were decoded, usually to repaint.
+   * 
+   * @param listener
+   *          the listener, or <code>null</code> for none
+   */
+  public void setListener(final Runnable listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Paints (the visible part of) the image, scaled to the specified bounds: the decoded tiles intersecting the clip,
+   * and the overview for the ones not yet decoded (requested, together with a margin of one tile around).
+   * 
+   * @param g
+   *          the graphics to paint on
+   * @param x
+   *          the x coordinate of the painted image
+   * @param y
+   *          the y coordinate of the painted image
+   * @param width
+   *          the width of the painted image
+   * @param height
+   *          the height of the painted image
+   */
+  public void paint(final Graphics2D g, final int x, final int y, final int width, final int height) {
+
+    final double scale = (double) width / this.width;
+
+    //
+    // the overview is enough (for example in the "best fit" mode)
+
+    if (overview.getWidth() >= width && overview.getHeight() >= height) {
+      g.drawImage(overview, x, y, width, height, null);
+      ImageMetrics.getInstance().addScaledPixels(g, x, y, width, height);
+      return;
+    }
+
+    //
+    // the clip, in the coordinates of the painted image
+
+    Rectangle clip = g.getClipBounds();
+
+    if (clip == null) {
+      clip = new Rectangle(x, y, width, height);
+    }
+
+    clip = clip.intersection(new Rectangle(x, y, width, height));
+
+    if (clip.isEmpty()) {
+      return;
+    }
+
+    //
+    // the subsampling: the biggest power of two not bigger than the zoom out ratio (so the tiles are scaled down, by
+    // at most a half, or scaled up)
+
+    int subsampling = 1;
+
+    while (subsampling * 2 * scale <= 1) {
+      subsampling *= 2;
+    }
+
+    final int sourceTileSize = tileSize * subsampling;
+
+    final int columns = (this.width + sourceTileSize - 1) / sourceTileSize;
+    final int rows = (this.height + sourceTileSize - 1) / sourceTileSize;
+
+    final int firstColumn = (int) ((clip.x - x) / scale) / sourceTileSize;
+    final int lastColumn = Math.min(columns - 1, (int) ((clip.x + clip.width - 1 - x) / scale) / sourceTileSize);
+    final int firstRow = (int) ((clip.y - y) / scale) / sourceTileSize;
+    final int lastRow = Math.min(rows - 1, (int) ((clip.y + clip.height - 1 - y) / scale) / sourceTileSize);
+
+    final List<Key> requests = new ArrayList<>();
+
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int column = firstColumn; column <= lastColumn; column++) {
+
+        final Key key = new Key(subsampling, column, row);
+
+        //
+        // the bounds of the tile, in the coordinates of the painted image
+        // (the edges computed the same way for the adjacent tiles, so there are no seams)
+
+        final int sourceX1 = column * sourceTileSize;
+        final int sourceY1 = row * sourceTileSize;
+        final int sourceX2 = Math.min(this.width, sourceX1 + sourceTileSize);
+        final int sourceY2 = Math.min(this.height, sourceY1 + sourceTileSize);
+
+        final int x1 = x + (int) Math.floor(sourceX1 * scale);
+        final int y1 = y + (int) Math.floor(sourceY1 * scale);
+        final int x2 = x + (int) Math.floor(sourceX2 * scale);
+        final int y2 = y + (int) Math.floor(sourceY2 * scale);
+
+        final BufferedImage tile;
+
+        synchronized (this) {
+          tile = tiles.get(key);
+        }
+
+        if (tile != null) {
+          g.drawImage(tile, x1, y1, x2 - x1, y2 - y1, null);
+        }
+
+        else {
+
+          final double overviewScale = (double) overview.getWidth() / this.width;
+
+          g.drawImage(overview, x1, y1, x2, y2, (int) (sourceX1 * overviewScale), (int) (sourceY1 * overviewScale), (int) Math.ceil(sourceX2 * overviewScale), (int) Math.ceil(sourceY2 * overviewScale), null);
+
+          requests.add(key);
+        }
+
+        ImageMetrics.getInstance().addScaledPixels(g, x1, y1, x2 - x1, y2 - y1);
+      }
+    }
+
+    //
+    // the margin, one tile around
+
+    for (int row = firstRow - 1; row <= lastRow + 1; row++) {
+      for (int column = firstColumn - 1; column <= lastColumn + 1; column++) {
+        if ((row < firstRow || row > lastRow || column < firstColumn || column > lastColumn) && row >= 0 && row < rows && column >= 0 && column < columns) {
+          requests.add(new Key(subsampling, column, row));
+        }
+      }
+    }
+
+    request(requests);
+  }
+
+  /**
+   * Replaces the tiles waiting to be decoded (the ones no longer needed are dropped).
+   */
+  private synchronized void request(final List<Key> keys) {
+
+    queue.clear();
+
+    for (Key key : keys) {
+      if (!tiles.containsKey(key)) {
+        queue.add(key);
+      }
+    }
+
+    notifyAll();
+  }
+
+  /**
+   * Stops the decoding thread and closes the file (the tiles and the overview remain valid).
+   */
+  @Override
+  public void close() {
+
+    closed = true;
+
+    synchronized (this) {
+      queue.clear();
+      notifyAll();
+    }
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * The loop of the decoding thread (the only one using the reader, after the constructor).
+   */
+  private void decode() {
+
+    try {
+
+      while (true) {
+
+        //
+        // the first tile waiting, together with the other tiles waiting around it (in a batch of at most
+        // MAX_BATCH x MAX_BATCH tiles): many formats (like PNG or JPEG) decode the rows in order, up to the
+        // requested region, so decoding one larger region is much faster than decoding each tile
+
+        final int subsampling;
+        final int firstColumn;
+        final int firstRow;
+        int lastColumn;
+        int lastRow;
+
+        //
+        // the tiles taken from the queue: the region is their bounding box, so it can cover tiles not requested (for
+        // example already decoded), these are not split from it
+
+        final List<Key> batch = new ArrayList<>();
+
+        synchronized (this) {
+
+          while (queue.isEmpty() && !closed) {
+            try {
+              wait();
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+
+          if (closed) {
+            return;
+          }
+
+          final Key first = queue.iterator().next();
+
+          subsampling = first.subsampling;
+
+          int minColumn = first.column;
+          int minRow = first.row;
+          lastColumn = first.column;
+          lastRow = first.row;
+
+          for (Iterator<Key> i = queue.iterator(); i.hasNext();) {
+
+            final Key key = i.next();
+
+            if (key.subsampling == subsampling && Math.abs(key.column - first.column) < MAX_BATCH && Math.abs(key.row - first.row) < MAX_BATCH) {
+              minColumn = Math.min(minColumn, key.column);
+              minRow = Math.min(minRow, key.row);
+              lastColumn = Math.max(lastColumn, key.column);
+              lastRow = Math.max(lastRow, key.row);
+            }
+          }
+
+          firstColumn = Math.max(minColumn, lastColumn - MAX_BATCH + 1);
+          firstRow = Math.max(minRow, lastRow - MAX_BATCH + 1);
+          lastColumn = Math.min(lastColumn, firstColumn + MAX_BATCH - 1);
+          lastRow = Math.min(lastRow, firstRow + MAX_BATCH - 1);
+
+          for (Iterator<Key> i = queue.iterator(); i.hasNext();) {
+
+            final Key key = i.next();
+
+            if (key.subsampling == subsampling && key.column >= firstColumn && key.column <= lastColumn && key.row >= firstRow && key.row <= lastRow) {
+              batch.add(key);
+              i.remove();
+            }
+          }
+        }
+
+        final int sourceTileSize = tileSize * subsampling;
+
+        final Rectangle region = new Rectangle(firstColumn * sourceTileSize, firstRow * sourceTileSize, (lastColumn - firstColumn + 1) * sourceTileSize, (lastRow - firstRow + 1) * sourceTileSize).intersection(new Rectangle(0, 0, width, height));
+
+        final BufferedImage image;
+
+        try {
+
+          final ImageReadParam param = reader.getDefaultReadParam();
+          param.setSourceRegion(region);
+          param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+          image = reader.read(0, param);
+        }
+
+        catch (IOException | RuntimeException | Error e) {
+          logger.warn("the region " + region + " could not be decoded: " + file, e);
+          continue;
+        }
+
+        //
+        // split in tiles (copies, compatible images, not sharing the pixels of the region)
+
+        for (Key key : batch) {
+
+          final int x = (key.column - firstColumn) * tileSize;
+          final int y = (key.row - firstRow) * tileSize;
+
+          if (x >= image.getWidth() || y >= image.getHeight()) {
+            continue;
+          }
+
+          final int tileWidth = Math.min(tileSize, image.getWidth() - x);
+          final int tileHeight = Math.min(tileSize, image.getHeight() - y);
+
+          final BufferedImage tile = UIUtils.createCompatibleImage(null, tileWidth, tileHeight, image.getColorModel().hasAlpha());
+
+          final Graphics2D g = tile.createGraphics();
+
+          try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(image, -x, -y, null);
+          }
+
+          finally {
+            g.dispose();
+          }
+
+          synchronized (this) {
+
+            final BufferedImage oldTile = tiles.put(key, tile);
+
+            if (oldTile != null) {
+              bytes -= ImageLoaderCache.getBytes(oldTile);
+            }
+
+            bytes += ImageLoaderCache.getBytes(tile);
+          }
+        }
+
+        synchronized (this) {
+          evict();
+        }
+
+        final Runnable listener = this.listener;
+
+        if (listener != null) {
+          listener.run();
+        }
+      }
+    }
+
+    finally {
+
+      reader.dispose();
+
+      try {
+        stream.close();
+      } catch (IOException e) {
+        logger.warn("the stream could not be closed: " + file, e);
+      }
+    }
+  }
+
+  private void evict() {
+    for (Iterator<Map.Entry<Key, BufferedImage>> i = tiles.entrySet().iterator(); bytes > maxBytes && i.hasNext();) {
+      bytes -= ImageLoaderCache.getBytes(i.next().getValue());
+      i.remove();
+    }
+  }
+
+  private static final class Key {
+
+    private final int subsampling;
+    private final int column;
+    private final int row;
+
+    private Key(final int subsampling, final int column, final int row) {
+      this.subsampling = subsampling;
+      this.column = column;
+      this.row = row;
+    }
+
+    @Override
+    public int hashCode() {
+      return (subsampling * 31 + column) * 31 + row;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+
+      final Key key = (Key) obj;
+
+      return subsampling == key.subsampling && column == key.column && row == key.row;
+    }
+  }
+
+}
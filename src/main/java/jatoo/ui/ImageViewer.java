@@ -20,14 +20,28 @@ import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.BorderFactory;
 import javax.swing.JScrollPane;
+import javax.swing.JViewport;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.MouseInputAdapter;
 
 import org.apache.commons.logging.Log;
@@ -63,12 +77,36 @@ public class ImageViewer extends JScrollPane {
   /** Image zoom with mouse wheel. */
   private final WheelZoomListener wheelZoomListener = new WheelZoomListener();
 
+  /** The animated (frame paced) zoom, used by the mouse wheel. */
+  private final ZoomAnimator zoomAnimator = new ZoomAnimator();
+
   /** Image drag to scroll. */
   private final DragToScrollListener dragToScrollListener = new DragToScrollListener();
 
   /** The image this viewer will display. */
   private BufferedImage image;
 
+  /** The thread building the pyramid of the image (for the zoomed out painting), if any. */
+  private Thread imagePyramidThread;
+
+  /** The size of the image the displayed preview belongs to (see {@link #setImagePreview(BufferedImage, int, int)}), if any. */
+  private Dimension imagePreviewSize;
+
+  /** The decoder of the visible regions of the displayed image file (see {@link #setImageFile(File)}), if any. */
+  private ImageRegionDecoder regionDecoder;
+
+  /** The image file being opened (see {@link #setImageFile(File)}), if any. */
+  private volatile File regionDecoderFile;
+
+  /** The (single) thread the image files are opened on, created on request. */
+  private ThreadPoolExecutor regionDecoderExecutor;
+
+  /** The opening of the last image file, cancelled if another file is displayed before it starts. */
+  private Future<?> regionDecoderTask;
+
+  /** The listener that displays the images loaded by an {@link ImageLoader}, created on request. */
+  private ImageLoaderListener imageLoaderListener;
+
   /**
    * The zoom percentage for the image to be displayed.
    * <p>
@@ -79,7 +117,7 @@ public class ImageViewer extends JScrollPane {
    * <li>[1..) - zoom percentage</li>
    * </ul>
    */
-  private int zoom = ZOOM_BEST_FIT;
+  private double zoom = ZOOM_BEST_FIT;
 
   /** The zoom step value zoom in/out. */
   private int zoomStep = 10;
@@ -91,6 +129,20 @@ public class ImageViewer extends JScrollPane {
 
     setViewportView(canvas);
 
+    //
+    // only the visible part of the zoomed image is scaled (and once), so scrolling and dragging stay fast
+
+    canvas.setTiledRendering(true);
+
+    //
+    // the canvas covers the viewport (opaque, with the same background), so a scroll just copies the visible pixels
+    // and only the newly exposed strips are painted
+
+    canvas.setOpaque(true);
+    canvas.setBackground(getViewport().getBackground());
+
+    getViewport().setScrollMode(JViewport.BLIT_SCROLL_MODE);
+
     setBorder(BorderFactory.createEmptyBorder());
     setViewportBorder(BorderFactory.createEmptyBorder());
 
@@ -126,13 +178,24 @@ public class ImageViewer extends JScrollPane {
   }
 
   /**
-   * Updates the image this viewer will display. If the value is <code>null</code>, nothing will be showed.
+   * Updates the image this viewer will display. If the value is <code>null</code>, nothing will be showed. If the image
+   * is the one already displayed (for example at the end of a progressive decoding), the zoom is kept.
    * 
    * @param image
    *          the {@link BufferedImage} to be displayed
    */
   public final void setImage(final BufferedImage image) {
+
+    if (image != null && image == this.image && regionDecoder == null) {
+      canvas.fireImageUpdated();
+      buildImagePyramid(image);
+      return;
+    }
+
+    closeRegionDecoder();
+
     this.image = image;
+    this.imagePreviewSize = null;
 
     boolean isImageSmaller = isImageSmaller();
 
@@ -143,6 +206,7 @@ public class ImageViewer extends JScrollPane {
     // }
 
     canvas.setImage(image);
+    buildImagePyramid(image);
 
     if (isImageSmaller) {
       zoom(ZOOM_REAL_SIZE);
@@ -152,7 +216,177 @@ public class ImageViewer extends JScrollPane {
   }
 
   /**
-   * Returns the image this viewer shows.
+   * Displays the preview of a bigger image (for example the thumbnail embedded in the file) at the size of the image,
+   * so the preview is zoomed and positioned as the image will be (see
+   * {@link ImageCanvas#setImagePreview(BufferedImage, int, int)}).
+   * 
+   * @param preview
+   *          the preview to be displayed
+   * @param imageWidth
+   *          the width of the image
+   * @param imageHeight
+   *          the height of the image
+   */
+  public final void setImagePreview(final BufferedImage preview, final int imageWidth, final int imageHeight) {
+
+    closeRegionDecoder();
+
+    this.image = preview;
+    this.imagePreviewSize = new Dimension(imageWidth, imageHeight);
+
+    canvas.setImagePreview(preview, imageWidth, imageHeight);
+    buildImagePyramid(preview);
+
+    if (isImageSmaller()) {
+      zoom(ZOOM_REAL_SIZE);
+    } else {
+      zoom(ZOOM_BEST_FIT);
+    }
+  }
+
+  /**
+   * Displays the image from the specified file, decoding only the visible regions (see {@link ImageRegionDecoder}):
+   * for the images too large to be decoded whole. The file is opened in background, meanwhile the previous image is
+   * displayed. The files are opened one at a time, the ones superseded (by another call) before their turn are skipped.
+   * 
+   * @param file
+   *          the image file to be displayed
+   */
+  public final void setImageFile(final File file) {
+
+    regionDecoderFile = file;
+
+    if (regionDecoderTask != null) {
+      regionDecoderTask.cancel(false);
+    }
+
+    if (regionDecoderExecutor == null) {
+
+      regionDecoderExecutor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r, ImageRegionDecoder.class.getSimpleName());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+      regionDecoderExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    regionDecoderExecutor.purge();
+
+    regionDecoderTask = regionDecoderExecutor.submit(new Runnable() {
+      public void run() {
+
+        //
+        // another image was displayed before this file got its turn
+
+        if (file != regionDecoderFile) {
+          return;
+        }
+
+        final ImageRegionDecoder regionDecoder;
+
+        try {
+          regionDecoder = new ImageRegionDecoder(file);
+        } catch (IOException | RuntimeException e) {
+          logger.warn("the image file could not be opened: " + file, e);
+          return;
+        }
+
+        SwingUtilities.invokeLater(new Runnable() {
+          public void run() {
+
+            //
+            // another image was displayed meanwhile
+
+            if (file != regionDecoderFile) {
+              regionDecoder.close();
+              return;
+            }
+
+            setImageRegionDecoder(regionDecoder);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Displays the image decoded (only the visible regions) by the specified decoder. The decoder is closed when another
+   * image is displayed.
+   * 
+   * @param regionDecoder
+   *          the decoder of the image to be displayed
+   */
+  public final void setImageRegionDecoder(final ImageRegionDecoder regionDecoder) {
+
+    if (regionDecoder != this.regionDecoder) {
+      closeRegionDecoder();
+    }
+
+    this.regionDecoder = regionDecoder;
+    this.regionDecoderFile = regionDecoder.getFile();
+    this.image = regionDecoder.getOverview();
+
+    //
+    // the decoded tiles are already the "pyramid"
+
+    buildImagePyramid(null);
+    canvas.setImageRegionDecoder(regionDecoder);
+
+    if (isImageSmaller()) {
+      zoom(ZOOM_REAL_SIZE);
+    } else {
+      zoom(ZOOM_BEST_FIT);
+    }
+  }
+
+  /**
+   * Returns the decoder of the displayed image, if the image is displayed through a decoder.
+   * 
+   * @return the decoder, or <code>null</code> if the displayed image is a fully decoded one
+   */
+  public final ImageRegionDecoder getImageRegionDecoder() {
+    return regionDecoder;
+  }
+
+  private void closeRegionDecoder() {
+
+    regionDecoderFile = null;
+
+    if (regionDecoder != null) {
+      regionDecoder.close();
+      regionDecoder = null;
+    }
+  }
+
+  /**
+   * Must be called after the pixels of the displayed image were changed (for example while the image is
+   * progressively decoded).
+   */
+  public final void fireImageUpdated() {
+    canvas.fireImageUpdated();
+  }
+
+  /**
+   * Returns a listener (to be added to an {@link ImageLoader}) that displays the loaded images, progressively: the
+   * preview as soon as available, updated while the image is decoded.
+   * 
+   * @return the listener
+   */
+  public final ImageLoaderListener getImageLoaderListener() {
+
+    if (imageLoaderListener == null) {
+      imageLoaderListener = new ProgressiveImageLoaderListener();
+    }
+
+    return imageLoaderListener;
+  }
+
+  /**
+   * Returns the image this viewer shows (the overview, if the image is displayed through a decoder, see
+   * {@link #setImageFile(File)}).
    * 
    * @return the {@link BufferedImage} this viewer is showing, or <code>null</code> if there is no image to be showed
    */
@@ -175,6 +409,28 @@ public class ImageViewer extends JScrollPane {
    *          the new zoom, as a percent
    */
   public final void zoom(final int newZoom) {
+    zoom((double) newZoom, null);
+  }
+
+  /**
+   * Zoom the image to the specified (percentage, fractional) value, keeping the point of the image under the specified
+   * anchor in place (for example the mouse cursor). The new size and the new position are computed at once, so there is
+   * a single layout (and a single repaint).
+   * 
+   * @param newZoom
+   *          the new zoom, as a percent
+   * @param anchor
+   *          the anchor, in the coordinates of the viewport, or <code>null</code> for the center of the viewport
+   */
+  public final void zoom(final double newZoom, final Point anchor) {
+    zoom(newZoom, anchor, null);
+  }
+
+  /**
+   * Zooms, keeping the specified point of the image (as a fraction of the image, see {@link #getImagePoint(Point)}), or
+   * the one now under the anchor if <code>null</code>, under the anchor.
+   */
+  private void zoom(final double newZoom, final Point anchor, final Point2D imagePoint) {
 
     if (image != null) {
 
@@ -191,13 +447,21 @@ public class ImageViewer extends JScrollPane {
         return;
       }
 
+      final ImageMetrics metrics = ImageMetrics.getInstance();
+      final long startTime = metrics.startTime();
+
       zoom = newZoom;
 
       //
-      // remember canvas size and visible rectangle before zooming
+      // the point of the image under the anchor (as a fraction of the image), before zooming
+
+      final Rectangle oldViewRect = getViewport().getViewRect();
+      final Point viewportAnchor = anchor != null ? anchor : new Point(oldViewRect.width / 2, oldViewRect.height / 2);
+
+      final Point2D anchorPoint = imagePoint != null ? imagePoint : getImagePoint(viewportAnchor);
 
-      final Dimension oldCanvasSize = canvas.getSize();
-      final Rectangle oldCanvasVisibleRect = canvas.getVisibleRect();
+      final double anchorX = anchorPoint.getX();
+      final double anchorY = anchorPoint.getY();
 
       //
       // reset canvas size if zoom is set to best fit
@@ -209,11 +473,8 @@ public class ImageViewer extends JScrollPane {
 
       else {
 
-        // System.out.println(getViewport().getWidth());
-        // canvas.setFillCanvasWithSmallerImage(getViewport().getWidth() < image.getWidth());
-
-        final int imageWidth = image.getWidth();
-        final int imageHeight = image.getHeight();
+        final int imageWidth = getImageWidth();
+        final int imageHeight = getImageHeight();
 
         //
         // there is no need for calculations if zoom is set to real size
@@ -236,61 +497,34 @@ public class ImageViewer extends JScrollPane {
 
         else {
 
-          final double ratio = ((double) zoom) / ((double) ZOOM_REAL_SIZE);
-
-          final double canvasWidth = ((double) (imageWidth)) * ratio;
-          final double canvasHeight = ((double) (imageHeight)) * ratio;
+          final double ratio = zoom / ZOOM_REAL_SIZE;
 
-          canvas.setPreferredSize(new Dimension((int) canvasWidth, (int) canvasHeight));
+          canvas.setPreferredSize(new Dimension((int) Math.round(imageWidth * ratio), (int) Math.round(imageHeight * ratio)));
+          canvas.setPaintRealSize(false);
         }
       }
 
       //
-      // revalidation
-      // do not use #revaliade() method, validation will occur after all currently
-      // pending events have been dispatched, use invalidate/validate/repaint
+      // a single layout (the viewport resizes the canvas)
 
       canvas.invalidate();
-      canvas.validate();
-      canvas.repaint();
-
-      invalidate();
       validate();
-      repaint();
 
       //
-      // update the visible rectangle (after the zooming):
-      //
-      // - calculate the center of the old visible rectangle
-      // - calculate the ratio (new size vs old size)
-      // - apply the ratio to the old center
-      // - calculate the new visible rectangle (using the translated center)
-      // - scroll to make visible the new rectangle
+      // the new position: the same point of the image under the anchor
+      // (clamped, the position can not go outside the canvas)
 
-      final int oldCanvasVisibleRectCenterX = oldCanvasVisibleRect.x + oldCanvasVisibleRect.width / 2;
-      final int oldCanvasVisibleRectCenterY = oldCanvasVisibleRect.y + oldCanvasVisibleRect.height / 2;
+      final Dimension canvasSize = canvas.getSize();
+      final Dimension extentSize = getViewport().getExtentSize();
 
-      final Dimension zoomedCanvasSize = canvas.getSize();
+      final int x = (int) Math.round(anchorX * canvasSize.width - viewportAnchor.x);
+      final int y = (int) Math.round(anchorY * canvasSize.height - viewportAnchor.y);
 
-      final double xRatio = zoomedCanvasSize.getWidth() / oldCanvasSize.getWidth();
-      final double yRatio = zoomedCanvasSize.getHeight() / oldCanvasSize.getHeight();
+      getViewport().setViewPosition(new Point(Math.max(0, Math.min(x, canvasSize.width - extentSize.width)), Math.max(0, Math.min(y, canvasSize.height - extentSize.height))));
 
-      final int zoomedCanvasVisibleRectCenterX = (int) (oldCanvasVisibleRectCenterX * xRatio);
-      final int zoomedCanvasVisibleRectCenterY = (int) (oldCanvasVisibleRectCenterY * yRatio);
+      metrics.zoomFinished(startTime);
 
-      Rectangle zoomedCanvasVisibleRect = new Rectangle(oldCanvasVisibleRect.getSize());
-      zoomedCanvasVisibleRect.x = zoomedCanvasVisibleRectCenterX - oldCanvasVisibleRect.width / 2;
-      zoomedCanvasVisibleRect.y = zoomedCanvasVisibleRectCenterY - oldCanvasVisibleRect.height / 2;
-
-      // Point mousePoint = getMousePosition();
-      // Dimension size = getSize();
-      // int xSlide = mousePoint.x < size.width / 2 ? -1 : +1;
-      // int YSlide = mousePoint.y < size.height / 2 ? -1 : +1;
-      //
-      // zoomedCanvasVisibleRect.x += (xSlide * (size.width*5/100));
-      // zoomedCanvasVisibleRect.y += (YSlide * (size.height*5/100));
-
-      canvas.scrollRectToVisible(zoomedCanvasVisibleRect);
+      canvas.repaint();
     }
 
     //
@@ -306,12 +540,43 @@ public class ImageViewer extends JScrollPane {
     updateCursor(false);
   }
 
+  /**
+   * Returns the point of the image (as a fraction of the image, in [0, 1]) under the specified point of the viewport.
+   */
+  private Point2D getImagePoint(final Point viewportPoint) {
+
+    final Rectangle viewRect = getViewport().getViewRect();
+
+    //
+    // (calculated, not the painted ones: there may have been no paint since the last zoom)
+
+    Rectangle imageBounds = canvas.calculateImageBounds(canvas.getWidth(), canvas.getHeight());
+
+    if (imageBounds == null || imageBounds.isEmpty()) {
+      imageBounds = new Rectangle(canvas.getSize());
+    }
+
+    final double x = imageBounds.width > 0 ? Math.min(1, Math.max(0, (viewRect.x + viewportPoint.x - imageBounds.x) / (double) imageBounds.width)) : 0.5;
+    final double y = imageBounds.height > 0 ? Math.min(1, Math.max(0, (viewRect.y + viewportPoint.y - imageBounds.y) / (double) imageBounds.height)) : 0.5;
+
+    return new Point2D.Double(x, y);
+  }
+
   /**
    * Returns the actual zoom of the viewer.
    * 
-   * @return the actual zoom, as a percent
+   * @return the actual zoom, as a percent (rounded)
    */
   public final int getZoom() {
+    return (int) Math.round(zoom);
+  }
+
+  /**
+   * Returns the actual zoom of the viewer, not rounded.
+   * 
+   * @return the actual zoom, as a (fractional) percent
+   */
+  public final double getPreciseZoom() {
     return zoom;
   }
 
@@ -323,7 +588,7 @@ public class ImageViewer extends JScrollPane {
    *          zoom out step
    */
   public final void zoomOut(final int zoomStep) {
-    zoom(zoom - zoomStep);
+    zoom(zoom - zoomStep, null);
   }
 
   /**
@@ -334,7 +599,7 @@ public class ImageViewer extends JScrollPane {
    *          zoom out step
    */
   public final void zoomIn(final int zoomStep) {
-    zoom(zoom + zoomStep);
+    zoom(zoom + zoomStep, null);
   }
 
   public final void zoomOut() {
@@ -343,13 +608,7 @@ public class ImageViewer extends JScrollPane {
       return;
     }
 
-    zoomOut(getAutoZoomStep());
-
-    if (new Rectangle(getViewport().getSize()).contains(new Rectangle(canvas.getSize()))) {
-      if (getZoom() > ZOOM_MIN_VALUE && getZoom() < ZOOM_MAX_VALUE) {
-        zoomOut();
-      }
-    }
+    zoom(getZoomOut(zoom), null);
   }
 
   public final void zoomIn() {
@@ -358,16 +617,41 @@ public class ImageViewer extends JScrollPane {
       return;
     }
 
-    zoomIn(getAutoZoomStep());
+    zoom(getZoomIn(zoom), null);
+  }
 
-    if (new Rectangle(getViewport().getSize()).contains(new Rectangle(canvas.getSize()))) {
-      if (getZoom() > ZOOM_MIN_VALUE && getZoom() < ZOOM_MAX_VALUE) {
-        zoomIn();
-      }
+  /**
+   * The zoom after a zoom in step: the steps that would still fit the image in the viewport are skipped (computed at
+   * once, with no layout for each step).
+   */
+  private double getZoomIn(final double zoom) {
+
+    final double bestFitZoom = getBestFitZoom();
+
+    double newZoom = zoom;
+
+    do {
+      newZoom += getAutoZoomStep(newZoom);
+    } while (newZoom <= bestFitZoom);
+
+    return Math.min(newZoom, ZOOM_MAX_VALUE);
+  }
+
+  /**
+   * The zoom after a zoom out step: the "best fit" mode, if the image would fit the viewport.
+   */
+  private double getZoomOut(final double zoom) {
+
+    if (zoom == ZOOM_BEST_FIT) {
+      return ZOOM_BEST_FIT;
     }
+
+    final double newZoom = zoom - getAutoZoomStep(zoom);
+
+    return newZoom <= getBestFitZoom() ? ZOOM_BEST_FIT : newZoom;
   }
 
-  private int getAutoZoomStep() {
+  private int getAutoZoomStep(final double zoom) {
     if (zoom >= ZOOM_REAL_SIZE * 2) {
       return zoomStep * 5;
     } else if (zoom >= ZOOM_REAL_SIZE) {
@@ -433,13 +717,80 @@ public class ImageViewer extends JScrollPane {
     setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
   }
 
+  /**
+   * Shows (or hides) the metrics of the rendering over the image (see {@link ImageCanvas#setMetricsOverlay(boolean)}).
+   * While shown, the viewport repaints the whole view on scroll (a copied overlay would be left behind).
+   * 
+   * @param metricsOverlay
+   *          <code>true</code> to show the metrics
+   */
+  public void setMetricsOverlay(final boolean metricsOverlay) {
+    canvas.setMetricsOverlay(metricsOverlay);
+    getViewport().setScrollMode(metricsOverlay ? JViewport.SIMPLE_SCROLL_MODE : JViewport.BLIT_SCROLL_MODE);
+  }
+
+  public boolean isMetricsOverlay() {
+    return canvas.isMetricsOverlay();
+  }
+
+  /**
+   * Builds (in background) the pyramid of the image and, once done, gives it to the canvas. The building of the
+   * pyramid of the previous image, if still running, is abandoned.
+   */
+  private void buildImagePyramid(final BufferedImage image) {
+
+    if (imagePyramidThread != null) {
+      imagePyramidThread.interrupt();
+      imagePyramidThread = null;
+    }
+
+    if (image == null || image.getWidth() / 2 < ImagePyramid.DEFAULT_MIN_SIZE || image.getHeight() / 2 < ImagePyramid.DEFAULT_MIN_SIZE) {
+      return;
+    }
+
+    imagePyramidThread = new Thread(new Runnable() {
+      public void run() {
+
+        final ImagePyramid pyramid = new ImagePyramid(image);
+
+        if (Thread.currentThread().isInterrupted()) {
+          return;
+        }
+
+        SwingUtilities.invokeLater(new Runnable() {
+          public void run() {
+            canvas.setImagePyramid(pyramid);
+          }
+        });
+      }
+    }, ImagePyramid.class.getSimpleName());
+
+    imagePyramidThread.setDaemon(true);
+    imagePyramidThread.setPriority(Thread.MIN_PRIORITY);
+    imagePyramidThread.start();
+  }
+
   private boolean isImageSmaller() {
 
     if (image == null) {
       return true;
     }
 
-    return image.getWidth() < getWidth() && image.getHeight() < getHeight();
+    return getImageWidth() < getWidth() && getImageHeight() < getHeight();
+  }
+
+  /**
+   * The width of the (whole) image, even if only the overview (or a preview) is displayed.
+   */
+  private int getImageWidth() {
+    return regionDecoder != null ? regionDecoder.getWidth() : imagePreviewSize != null ? imagePreviewSize.width : image.getWidth();
+  }
+
+  /**
+   * The height of the (whole) image, even if only the overview (or a preview) is displayed.
+   */
+  private int getImageHeight() {
+    return regionDecoder != null ? regionDecoder.getHeight() : imagePreviewSize != null ? imagePreviewSize.height : image.getHeight();
   }
 
   /**
@@ -454,18 +805,223 @@ public class ImageViewer extends JScrollPane {
         return;
       }
 
-      if (e.getPreciseWheelRotation() > 0) {
-        zoomOut();
-      } else {
-        zoomIn();
+      //
+      // the wheel only moves the target, the zoom is applied (at most) once per frame
+
+      zoomAnimator.zoomBy(-e.getPreciseWheelRotation(), e.getPoint());
+    }
+  }
+
+  /**
+   * Animates the zoom toward a target: the target is moved by the input (the wheel notches within a frame are
+   * coalesced), and on every frame the zoom gets closer (eased) to the target, with a single relayout. While
+   * animating, the canvas paints fast (see {@link ImageCanvas#setFastPainting(boolean)}), the full quality painting is
+   * restored once the input settles.
+   */
+  private class ZoomAnimator implements ActionListener {
+
+    /** The frame duration (in milliseconds), ~60 frames per second. */
+    private static final int FRAME_DELAY = 16;
+
+    /** The fraction of the remaining distance to the target covered in each frame. */
+    private static final double EASING = 0.35;
+
+    /** The time (in milliseconds) with no input, after the target was reached, before the full quality painting. */
+    private static final int SETTLE_DELAY = 150;
+
+    private final Timer timer = new Timer(FRAME_DELAY, this);
+
+    /** The animated zoom, as a percent. */
+    private double current;
+
+    /** The target zoom, as a percent. */
+    private double target;
+
+    /** The target is the "best fit" mode (reached when zoomed out up to it). */
+    private boolean targetBestFit;
+
+    /** The point (in the coordinates of the viewport) kept in place while zooming. */
+    private Point anchor;
+
+    /**
+     * The point of the image kept under the anchor, taken on input, not on every frame (the view position is rounded on
+     * every frame, so the point would drift).
+     */
+    private Point2D imagePoint;
+
+    private long lastInputTime;
+
+    /**
+     * Moves the target.
+     * 
+     * @param steps
+     *          the number of (possibly fractional) zoom steps, positive to zoom in, negative to zoom out
+     * @param anchor
+     *          the point (in the coordinates of the viewport) to be kept in place, usually the mouse cursor
+     */
+    public void zoomBy(final double steps, final Point anchor) {
+
+      if (image == null) {
+        return;
+      }
+
+      final double bestFitZoom = getBestFitZoom();
+
+      if (!timer.isRunning()) {
+        current = isBestFit() ? bestFitZoom : zoom;
+        target = current;
+      }
+
+      target = Math.min(ZOOM_MAX_VALUE, Math.max(bestFitZoom, target + steps * getAutoZoomStep(target)));
+      targetBestFit = target <= bestFitZoom;
+
+      this.anchor = anchor;
+      this.imagePoint = getImagePoint(anchor);
+
+      lastInputTime = System.currentTimeMillis();
+
+      if (!timer.isRunning()) {
+        canvas.setFastPainting(true);
+        timer.start();
+      }
+    }
+
+    @Override
+    public void actionPerformed(final ActionEvent e) {
+
+      if (image == null) {
+        stop();
+        return;
+      }
+
+      if (current != target) {
+
+        final double delta = target - current;
+
+        if (Math.abs(delta) < 0.5) {
+          current = target;
+        } else {
+          current += delta * EASING;
+        }
+
+        if (current == target && targetBestFit) {
+          zoom(ZOOM_BEST_FIT);
+        }
+
+        else {
+          zoom(current, anchor, imagePoint);
+        }
+      }
+
+      else if (System.currentTimeMillis() - lastInputTime >= SETTLE_DELAY) {
+        stop();
+      }
+    }
+
+    private void stop() {
+      timer.stop();
+      canvas.setFastPainting(false);
+    }
+  }
+
+  /**
+   * The zoom (as a percent) of the "best fit" mode: the image fits the viewport.
+   */
+  private double getBestFitZoom() {
+
+    final Dimension viewportSize = getViewport().getExtentSize();
+
+    return Math.min(100.0 * viewportSize.width / getImageWidth(), 100.0 * viewportSize.height / getImageHeight());
+  }
+
+  /**
+   * Displays (on the event dispatch thread) the images loaded by an {@link ImageLoader}, progressively.
+   */
+  private class ProgressiveImageLoaderListener implements ImageLoaderListener {
+
+    /** Not to flood the event queue with updates while the previous one was not yet painted. */
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+
+    /** The number of requests so far: the updates still to be displayed for a superseded request are dropped. */
+    private final AtomicLong requests = new AtomicLong();
+
+    @Override
+    public void onLoadRequested(final File file) {
+      requests.incrementAndGet();
+    }
+
+    @Override
+    public void onStartLoading(final File file) {}
+
+    @Override
+    public void onImagePreview(final File file, final BufferedImage image, final int imageWidth, final int imageHeight) {
+
+      final long request = requests.get();
+
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+
+          if (request != requests.get()) {
+            return;
+          }
+
+          if (image.getWidth() == imageWidth && image.getHeight() == imageHeight) {
+            setImage(image);
+          } else {
+            setImagePreview(image, imageWidth, imageHeight);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void onImageUpdated(final File file, final BufferedImage image, final Rectangle region) {
+
+      if (!updatePending.compareAndSet(false, true)) {
+        return;
       }
+
+      final long request = requests.get();
+
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+
+          updatePending.set(false);
+
+          if (request == requests.get() && image == getImage()) {
+            fireImageUpdated();
+          }
+        }
+      });
     }
+
+    @Override
+    public void onImageLoaded(final File file, final BufferedImage image) {
+
+      final long request = requests.get();
+
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          if (request == requests.get()) {
+            setImage(image);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void onImageError(final File file, final Throwable t) {}
   }
 
   /**
    * Mouse listener for dragging the image with the mouse.
    */
-  private class DragToScrollListener extends MouseInputAdapter {
+  private class DragToScrollListener extends MouseInputAdapter implements ActionListener {
+
+    /**
+     * Scrolls the distance dragged meanwhile, at most once per frame (the drag events within a frame are coalesced).
+     */
+    private final Timer timer = new Timer(ZoomAnimator.FRAME_DELAY, this);
 
     /**
      * The X coordinate for mouse pressed event, used to calculate the horizontal drag distance.
@@ -477,6 +1033,16 @@ public class ImageViewer extends JScrollPane {
      */
     private int y;
 
+    /** The horizontal drag distance not scrolled yet. */
+    private int xDragged;
+
+    /** The vertical drag distance not scrolled yet. */
+    private int yDragged;
+
+    {
+      timer.setRepeats(false);
+    }
+
     @Override
     public void mousePressed(final MouseEvent e) {
 
@@ -484,25 +1050,43 @@ public class ImageViewer extends JScrollPane {
 
       x = e.getX();
       y = e.getY();
+
+      xDragged = 0;
+      yDragged = 0;
     }
 
     @Override
     public void mouseDragged(final MouseEvent e) {
 
-      final int xDragged = e.getX() - x;
-      final int yDragged = e.getY() - y;
-
-      final Point pointZero = SwingUtilities.convertPoint(getViewport(), 0, 0, canvas);
-      final Rectangle viewRectangle = getViewport().getViewRect();
+      //
+      // the coordinates are relative to the viewport, so they are not affected by the scroll
 
-      canvas.scrollRectToVisible(new Rectangle(pointZero.x - xDragged, pointZero.y - yDragged, viewRectangle.width, viewRectangle.height));
+      xDragged += e.getX() - x;
+      yDragged += e.getY() - y;
 
       x = e.getX();
       y = e.getY();
+
+      //
+      // the first drag of a frame is scrolled right away, the next ones when the frame ends
+
+      if (!timer.isRunning()) {
+        scroll();
+        timer.start();
+      }
+    }
+
+    @Override
+    public void actionPerformed(final ActionEvent e) {
+      scroll();
     }
 
     @Override
     public void mouseReleased(final MouseEvent e) {
+
+      timer.stop();
+      scroll();
+
       updateCursor(false);
     }
 
@@ -510,6 +1094,33 @@ public class ImageViewer extends JScrollPane {
     public void mouseEntered(final MouseEvent e) {
       updateCursor(false);
     }
+
+    /**
+     * Moves the view by the distance dragged meanwhile (within the bounds of the canvas): the viewport copies the
+     * pixels still visible and only the newly exposed strips of the canvas are painted.
+     */
+    private void scroll() {
+
+      if (xDragged == 0 && yDragged == 0) {
+        return;
+      }
+
+      final JViewport viewport = getViewport();
+
+      final Point viewPosition = viewport.getViewPosition();
+      final Dimension viewSize = viewport.getViewSize();
+      final Dimension extentSize = viewport.getExtentSize();
+
+      final int newX = Math.max(0, Math.min(viewPosition.x - xDragged, viewSize.width - extentSize.width));
+      final int newY = Math.max(0, Math.min(viewPosition.y - yDragged, viewSize.height - extentSize.height));
+
+      xDragged = 0;
+      yDragged = 0;
+
+      if (newX != viewPosition.x || newY != viewPosition.y) {
+        viewport.setViewPosition(new Point(newX, newY));
+      }
+    }
   }
 
   /**
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An {@link ImageInputStream} over a memory mapped file: the readers get the bytes straight from the page cache, with
+ * no system call and no intermediate buffer for each read.
+ * <p>
+ * Use {@link #open(File)} to get the best stream for a file: mapped for the big files, the usual one (see
+ * {@link ImageIO#createImageInputStream(Object)}) for the small ones (not worth the cost of the mapping) and for the
+ * huge ones (bigger than a mapping can be).
+ * <p>
+ * The mapping is released by the garbage collector, not when the stream is closed: on some systems (like Windows) the
+ * file can not be deleted, renamed or written meanwhile. So only {@link ImageLoader} maps its files (one image at a
+ * time, the one being shown), the background readers (icons, prefetch, regions) use the usual streams.
+ * <p>
+ * A file truncated while mapped makes the access to the missing pages fail with an {@link InternalError} (not with an
+ * {@link IOException}), raised by the JVM a little later, not always by the read itself.
+ * 
+ * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
+ * @version 1.0, October 17, 2026
+ */
+public class MappedImageInputStream extends ImageInputStreamImpl {
+
+  /** The default minimum size (in bytes) of the mapped files: 1 MB. */
+  public static final long DEFAULT_THRESHOLD = 1024 * 1024;
+
+  private MappedByteBuffer buffer;
+  private final long length;
+
+  /**
+   * Creates a stream over the whole file, mapped.
+   * 
+   * @param file
+   *          the file
+   * 
+   * @throws IOException
+   *           if the file could not be opened or mapped
+   */
+  public MappedImageInputStream(final File file) throws IOException {
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+
+      final long size = channel.size();
+
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("the file is too big to be mapped: " + file);
+      }
+
+      //
+      // the mapping stays valid after the channel is closed
+
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      length = size;
+    }
+  }
+
+  /**
+   * Opens the best stream for the specified file: mapped if the size of the file is at least
+   * {@link #DEFAULT_THRESHOLD} (and can be mapped), the usual one otherwise.
+   * 
+   * @param file
+   *          the file
+   * 
+   * @return the stream, or <code>null</code> if the file could not be opened (as
+   *         {@link ImageIO#createImageInputStream(Object)})
+   * 
+   * @throws IOException
+   *           if an error occurs while opening the file
+   */
+  public static ImageInputStream open(final File file) throws IOException {
+    return open(file, DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Opens the best stream for the specified file: mapped if the size of the file is at least the specified threshold
+   * (and can be mapped), the usual one otherwise.
+   * 
+   * @param file
+   *          the file
+   * @param threshold
+   *          the minimum size (in bytes) of a mapped file
+   * 
+   * @return the stream, or <code>null</code> if the file could not be opened (as
+   *         {@link ImageIO#createImageInputStream(Object)})
+   * 
+   * @throws IOException
+   *           if an error occurs while opening the file
+   */
+  public static ImageInputStream open(final File file, final long threshold) throws IOException {
+
+    final long size = file.length();
+
+    if (size >= threshold && size <= Integer.MAX_VALUE && file.isFile()) {
+      return new MappedImageInputStream(file);
+    }
+
+    return ImageIO.createImageInputStream(file);
+  }
+
+  @Override
+  public int read() throws IOException {
+
+    checkClosed();
+    bitOffset = 0;
+
+    if (streamPos >= length) {
+      return -1;
+    }
+
+    return buffer.get((int) streamPos++) & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+
+    checkClosed();
+
+    if (off < 0 || len < 0 || off + len > b.length || off + len < 0) {
+      throw new IndexOutOfBoundsException("off: " + off + ", len: " + len + ", b.length: " + b.length);
+    }
+
+    bitOffset = 0;
+
+    if (len == 0) {
+      return 0;
+    }
+
+    if (streamPos >= length) {
+      return -1;
+    }
+
+    final int count = (int) Math.min(len, length - streamPos);
+
+    //
+    // (through Buffer, as the covariant override does not exist on Java 8)
+
+    ((Buffer) buffer).position((int) streamPos);
+    buffer.get(b, off, count);
+
+    streamPos += count;
+
+    return count;
+  }
+
+  @Override
+  public long length() {
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    super.close();
+    buffer = null;
+  }
+
+}
@@ -19,6 +19,7 @@ package jatoo.ui;
 import jatoo.image.ImageUtils;
 
 import java.awt.Cursor;
+import java.awt.GraphicsEnvironment;
 import java.awt.Point;
 import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
@@ -54,8 +55,19 @@ public class UITheme {
     texts = ResourceBundle.getBundle(UITheme.class.getPackage().getName() + ".texts");
 
     cursorDefault = Cursor.getDefaultCursor();
-    cursorDrag = Toolkit.getDefaultToolkit().createCustomCursor(new ImageIcon(UITheme.class.getResource("CursorDrag.gif")).getImage(), new Point(0, 0), "CursorDrag");
-    cursorDragging = Toolkit.getDefaultToolkit().createCustomCursor(new ImageIcon(UITheme.class.getResource("CursorDragging.gif")).getImage(), new Point(0, 0), "CursorDragging");
+
+    //
+    // no custom cursors without a display (they cannot be created headless), the default one is used
+
+    if (GraphicsEnvironment.isHeadless()) {
+      cursorDrag = cursorDefault;
+      cursorDragging = cursorDefault;
+    }
+
+    else {
+      cursorDrag = Toolkit.getDefaultToolkit().createCustomCursor(new ImageIcon(UITheme.class.getResource("CursorDrag.gif")).getImage(), new Point(0, 0), "CursorDrag");
+      cursorDragging = Toolkit.getDefaultToolkit().createCustomCursor(new ImageIcon(UITheme.class.getResource("CursorDragging.gif")).getImage(), new Point(0, 0), "CursorDragging");
+    }
 
     initIcon(ImageFileList.class, "AddImages", "png");
     initIcon(ImageFileList.class, "RemoveAll", "png");
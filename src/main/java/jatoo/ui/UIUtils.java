@@ -16,9 +16,11 @@
 
 package jatoo.ui;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
@@ -26,6 +28,7 @@ import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Toolkit;
+import java.awt.Transparency;
 import java.awt.Window;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
@@ -34,6 +37,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.awt.image.BufferedImage;
 
 import javax.swing.Action;
 import javax.swing.JComponent;
@@ -57,7 +61,7 @@ import org.apache.commons.logging.LogFactory;
  * A collection of utility methods to ease the work with UI components.
  * 
  * @author <a href="http://cristian.sulea.net" rel="author">Cristian Sulea</a>
- * @version 4.2, March 16, 2018
+ * @version 4.3, October 17, 2026
  */
 public class UIUtils {
 
@@ -684,4 +688,112 @@ public class UIUtils {
     return biggestScreenHeight;
   }
 
+  //
+  // --- Compatible images
+  //
+
+  /**
+   * Creates an image in the format of the specified graphics configuration (the one the screen uses, so painting it is
+   * a straight, accelerated copy, not a conversion).
+   * 
+   * @param gc
+   *          the graphics configuration (for example {@link Graphics2D#getDeviceConfiguration()}), or
+   *          <code>null</code> for the one of the default screen
+   * @param width
+   *          the width of the image
+   * @param height
+   *          the height of the image
+   * @param alpha
+   *          <code>true</code> if the image needs alpha
+   * 
+   * @return the compatible image
+   */
+  public static BufferedImage createCompatibleImage(final GraphicsConfiguration gc, final int width, final int height, final boolean alpha) {
+
+    final GraphicsConfiguration configuration = gc != null ? gc : getDefaultGraphicsConfiguration();
+
+    if (configuration != null) {
+      return configuration.createCompatibleImage(width, height, alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE);
+    }
+
+    return new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+  }
+
+  /**
+   * Checks if the image is in the format of the specified graphics configuration.
+   * 
+   * @param gc
+   *          the graphics configuration, or <code>null</code> for the one of the default screen
+   * @param image
+   *          the image
+   * 
+   * @return <code>true</code> if the image is compatible
+   */
+  public static boolean isCompatibleImage(final GraphicsConfiguration gc, final BufferedImage image) {
+
+    final GraphicsConfiguration configuration = gc != null ? gc : getDefaultGraphicsConfiguration();
+
+    if (configuration != null) {
+      return image.getColorModel().equals(configuration.getColorModel(image.getTransparency()));
+    }
+
+    return image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB;
+  }
+
+  /**
+   * Converts the image to the format of the default screen (see
+   * {@link #toCompatibleImage(GraphicsConfiguration, BufferedImage)}).
+   * 
+   * @param image
+   *          the image
+   * 
+   * @return the compatible image, or the image itself if already compatible
+   */
+  public static BufferedImage toCompatibleImage(final BufferedImage image) {
+    return toCompatibleImage(null, image);
+  }
+
+  /**
+   * Converts the image to the format of the specified graphics configuration, so it is painted with a straight copy
+   * (for example a {@link BufferedImage#TYPE_3BYTE_BGR} or a {@link BufferedImage#TYPE_CUSTOM} image is converted on
+   * every paint, through the slow software loops).
+   * 
+   * @param gc
+   *          the graphics configuration, or <code>null</code> for the one of the default screen
+   * @param image
+   *          the image
+   * 
+   * @return the compatible image, or the image itself if already compatible
+   */
+  public static BufferedImage toCompatibleImage(final GraphicsConfiguration gc, final BufferedImage image) {
+
+    if (isCompatibleImage(gc, image)) {
+      return image;
+    }
+
+    final BufferedImage compatibleImage = createCompatibleImage(gc, image.getWidth(), image.getHeight(), image.getColorModel().hasAlpha());
+
+    final Graphics2D g = compatibleImage.createGraphics();
+
+    try {
+      g.setComposite(AlphaComposite.Src);
+      g.drawImage(image, 0, 0, null);
+    }
+
+    finally {
+      g.dispose();
+    }
+
+    return compatibleImage;
+  }
+
+  private static GraphicsConfiguration getDefaultGraphicsConfiguration() {
+
+    if (GraphicsEnvironment.isHeadless()) {
+      return null;
+    }
+
+    return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+  }
+
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Checks {@link ImageCanvasTiles}: only the tiles intersecting the clip are rendered, the repaints hit the cache, and
+ * the least recently used tiles are evicted when the limit (in bytes) is exceeded. Paints on an offscreen image, so it
+ * runs headless too.
+ */
+public class ImageCanvasTilesTest {
+
+  private static final int TILE_SIZE = 100;
+
+  /** The image is painted zoomed at 200% (2000 x 1600, 20 x 16 tiles). */
+  private static final int WIDTH = 2000;
+  private static final int HEIGHT = 1600;
+
+  private static final BufferedImage IMAGE = new BufferedImage(1000, 800, BufferedImage.TYPE_INT_RGB);
+  private static final BufferedImage SCREEN = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+
+  private static boolean failed;
+
+  public static void main(String[] args) {
+
+    final Graphics2D g = IMAGE.createGraphics();
+    g.setColor(Color.ORANGE);
+    g.fillRect(0, 0, IMAGE.getWidth(), IMAGE.getHeight());
+    g.dispose();
+
+    //
+    // the bytes of a tile (compatible with the offscreen "screen"), for the limits below
+
+    final ImageCanvasTiles probe = new ImageCanvasTiles(TILE_SIZE, Long.MAX_VALUE);
+    paint(probe, null, 0, 0, TILE_SIZE, TILE_SIZE);
+    final long tileBytes = probe.getBytes();
+
+    //
+    // a viewport of 2 x 2 tiles (at the origin of the tiles): 4 tiles rendered, then all 4 from the cache
+
+    final ImageCanvasTiles tiles = new ImageCanvasTiles(TILE_SIZE, 6 * tileBytes);
+
+    paint(tiles, null, 0, 0, 2 * TILE_SIZE, 2 * TILE_SIZE);
+    report("first paint of 2 x 2 tiles: " + tiles.getMisses() + " rendered", tiles.getMisses() == 4 && tiles.getSize() == 4);
+
+    paint(tiles, null, 0, 0, 2 * TILE_SIZE, 2 * TILE_SIZE);
+    report("repaint: " + (tiles.getMisses() - 4) + " rendered, " + tiles.getHits() + " from the cache", tiles.getMisses() == 4 && tiles.getHits() == 4);
+
+    //
+    // scrolled right by one tile: only the newly visible column is rendered
+
+    paint(tiles, null, TILE_SIZE, 0, 2 * TILE_SIZE, 2 * TILE_SIZE);
+    report("scrolled by one tile: " + (tiles.getMisses() - 4) + " rendered", tiles.getMisses() == 6 && tiles.getSize() == 6);
+
+    //
+    // a clip not aligned to the tiles (50, 150, 100, 100) intersects 4 tiles, 2 of them new (the third row)
+
+    paint(tiles, null, 50, 150, TILE_SIZE, TILE_SIZE);
+    report("unaligned clip: " + (tiles.getMisses() - 6) + " rendered", tiles.getMisses() == 8);
+
+    //
+    // the limit is 6 tiles: the least recently used are evicted ((0, 0) and (1, 0), not painted since the scroll)
+
+    report("limit of 6 tiles: " + tiles.getSize() + " kept, " + tiles.getBytes() + " bytes (limit " + tiles.getMaxBytes() + ")", tiles.getSize() == 6 && tiles.getBytes() <= tiles.getMaxBytes());
+
+    final long misses = tiles.getMisses();
+    paint(tiles, null, 0, 0, TILE_SIZE, TILE_SIZE);
+    report("the least recently used tile (0, 0) was evicted: rendered again", tiles.getMisses() == misses + 1);
+
+    final long hits = tiles.getHits();
+    paint(tiles, null, TILE_SIZE, 2 * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+    report("a recently used tile (1, 2) was kept: from the cache", tiles.getHits() == hits + 1);
+
+    //
+    // a lower limit evicts right away
+
+    tiles.setMaxBytes(2 * tileBytes);
+    report("limit lowered to 2 tiles: " + tiles.getSize() + " kept", tiles.getSize() == 2 && tiles.getBytes() == 2 * tileBytes);
+
+    //
+    // another interpolation: the tiles are rendered again
+
+    paint(tiles, RenderingHints.VALUE_INTERPOLATION_BILINEAR, 0, 0, TILE_SIZE, TILE_SIZE);
+    report("other interpolation: the cache was cleared", tiles.getSize() == 1);
+
+    System.out.println(failed ? "FAILED" : "OK");
+
+    System.exit(failed ? 1 : 0);
+  }
+
+  /**
+   * Paints the zoomed image at (0, 0), with the specified clip.
+   */
+  private static void paint(final ImageCanvasTiles tiles, final Object interpolationHint, final int clipX, final int clipY, final int clipWidth, final int clipHeight) {
+
+    final Graphics2D g = SCREEN.createGraphics();
+
+    try {
+      g.clipRect(clipX, clipY, clipWidth, clipHeight);
+      tiles.paint(g, IMAGE, interpolationHint, 0, 0, WIDTH, HEIGHT);
+    }
+
+    finally {
+      g.dispose();
+    }
+  }
+
+  private static void report(final String message, final boolean ok) {
+    System.out.println((ok ? "ok      " : "FAILED  ") + message);
+    failed |= !ok;
+  }
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Checks {@link ImageLoaderCache} (the eviction by bytes), {@link ImageLoaderPrefetcher} (the window, the direction,
+ * the cancellation of the prefetches no longer needed) and the supersession of the {@link ImageLoader} requests, on a
+ * few generated (big, slow to decode) images. Runs headless too.
+ */
+public class ImageLoaderPrefetcherTest {
+
+  private static final int FILES_COUNT = 8;
+
+  private static boolean failed;
+
+  public static void main(String[] args) throws Exception {
+
+    final File folder = File.createTempFile("jatoo-ui-", "-prefetcher");
+    folder.delete();
+    folder.mkdirs();
+
+    try {
+
+      checkCache(folder);
+
+      final List<File> files = createImages(folder);
+
+      checkPrefetcher(files);
+      checkLoader(files);
+    }
+
+    finally {
+
+      for (File file : folder.listFiles()) {
+        file.delete();
+      }
+
+      folder.delete();
+    }
+
+    System.out.println(failed ? "FAILED" : "OK");
+
+    System.exit(failed ? 1 : 0);
+  }
+
+  private static void checkCache(final File folder) throws IOException {
+
+    final File[] files = new File[5];
+
+    for (int i = 0; i < files.length; i++) {
+      files[i] = new File(folder, "cache-" + i);
+      files[i].createNewFile();
+    }
+
+    //
+    // 100 x 100 x 4 bytes each, the limit is 3 images
+
+    final long imageBytes = 100 * 100 * 4;
+    final ImageLoaderCache cache = new ImageLoaderCache(3 * imageBytes);
+
+    cache.put(files[0], new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB));
+    cache.put(files[1], new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB));
+    cache.put(files[2], new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB));
+
+    report("cache: 3 images, " + cache.getBytes() + " bytes", cache.getSize() == 3 && cache.getBytes() == 3 * imageBytes);
+
+    //
+    // the first image used again, so the second one is the least recently used
+
+    cache.get(files[0]);
+    cache.put(files[3], new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB));
+
+    report("cache: over the limit, the least recently used image is evicted", cache.getSize() == 3 && !cache.contains(files[1]) && cache.contains(files[0]) && cache.getBytes() <= cache.getMaxBytes());
+
+    //
+    // the limit is in bytes, not in images: a big image evicts more
+
+    cache.put(files[4], new BufferedImage(100, 200, BufferedImage.TYPE_INT_RGB));
+
+    report("cache: an image of 2 sizes evicts 2 images, " + cache.getSize() + " left", cache.getSize() == 2 && cache.contains(files[4]) && cache.contains(files[3]));
+
+    cache.put(files[1], new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB));
+
+    report("cache: an image bigger than the limit is not cached (and evicts nothing)", !cache.contains(files[1]) && cache.getSize() == 2);
+
+    files[3].setLastModified(files[3].lastModified() - 10000);
+
+    report("cache: the image of a modified file is invalidated", cache.get(files[3]) == null && !cache.contains(files[3]) && cache.getBytes() == 2 * imageBytes);
+  }
+
+  private static void checkPrefetcher(final List<File> files) throws Exception {
+
+    final List<File> prefetched = Collections.synchronizedList(new ArrayList<File>());
+
+    final ImageLoaderCache cache = new ImageLoaderCache(Long.MAX_VALUE) {
+      public synchronized void put(final File file, final BufferedImage image) {
+        super.put(file, image);
+        prefetched.add(file);
+      }
+    };
+
+    final ImageLoaderPrefetcher prefetcher = new ImageLoaderPrefetcher(cache);
+    prefetcher.setWindow(2);
+    prefetcher.setFiles(files);
+
+    //
+    // forward: the window around the 5th file, the next ones first, nearest first
+
+    prefetcher.setCurrentFile(files.get(5));
+    waitForPrefetched(prefetcher, prefetched, 4);
+
+    report("prefetcher: window of 2 around 5, forward: " + names(prefetched), prefetched.equals(Arrays.asList(files.get(6), files.get(4), files.get(7), files.get(3))));
+
+    //
+    // backward (to 4): the previous ones first, only the ones not cached
+
+    prefetched.clear();
+
+    prefetcher.setCurrentFile(files.get(4));
+    waitForPrefetched(prefetcher, prefetched, 2);
+
+    report("prefetcher: moved back to 4: " + names(prefetched), prefetched.equals(Arrays.asList(files.get(5), files.get(2))));
+
+    //
+    // a jump while prefetching: the prefetch in progress (no longer in the window) is aborted, not cached
+
+    cache.clear();
+    prefetched.clear();
+
+    prefetcher.setCurrentFile(files.get(5));
+
+    while (prefetcher.getQueueSize() == 4) {
+      Thread.sleep(1);
+    }
+
+    final long startTime = System.currentTimeMillis();
+
+    prefetcher.setCurrentFile(files.get(0));
+    waitForPrefetched(prefetcher, prefetched, 2);
+
+    report("prefetcher: jumped to 0 while prefetching 6: " + names(prefetched) + " in " + (System.currentTimeMillis() - startTime) + " ms", prefetched.equals(Arrays.asList(files.get(1), files.get(2))));
+  }
+
+  private static void checkLoader(final List<File> files) throws Exception {
+
+    final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+    final ImageLoader loader = new ImageLoader(new ImageLoaderListener() {
+
+      public void onStartLoading(File file) {
+        events.add("start " + file.getName());
+      }
+
+      public void onImageLoaded(File file, BufferedImage image) {
+        events.add("loaded " + file.getName());
+      }
+
+      public void onImageError(File file, Throwable t) {
+        events.add("error " + file.getName());
+      }
+    });
+
+    //
+    // 3 requests in a row: the first one is aborted while decoding, the second one never starts
+
+    final ImageLoaderRequest request1 = loader.load(files.get(0));
+
+    while (events.isEmpty()) {
+      Thread.sleep(1);
+    }
+
+    Thread.sleep(20);
+
+    final long startTime = System.currentTimeMillis();
+
+    final ImageLoaderRequest request2 = loader.load(files.get(1));
+    final ImageLoaderRequest request3 = loader.load(files.get(2));
+
+    final BufferedImage image = request3.get();
+    final long time = System.currentTimeMillis() - startTime;
+
+    Thread.sleep(100);
+
+    report("loader: 3 requests in a row, " + events + " in " + time + " ms", request1.isCancelled() && request2.isCancelled() && !request3.isCancelled() && image != null && !events.contains("start " + files.get(1).getName()) && !events.contains("loaded " + files.get(0).getName()) && events.get(events.size() - 1).equals("loaded " + files.get(2).getName()));
+
+    loader.stopThread();
+  }
+
+  /**
+   * Waits until the queue of the prefetcher is empty and the specified number of images were prefetched, then a little
+   * more (so an unexpected prefetch, if any, is caught too).
+   */
+  private static void waitForPrefetched(final ImageLoaderPrefetcher prefetcher, final List<File> prefetched, final int count) throws InterruptedException {
+
+    final long startTime = System.currentTimeMillis();
+
+    while ((prefetcher.getQueueSize() > 0 || prefetched.size() < count) && System.currentTimeMillis() - startTime < 30000) {
+      Thread.sleep(10);
+    }
+
+    Thread.sleep(500);
+  }
+
+  /**
+   * Big noisy JPEG images (6000 x 4000, copies of the same one), slow to decode.
+   */
+  private static List<File> createImages(final File folder) throws IOException {
+
+    final Random random = new Random(0);
+    final BufferedImage image = new BufferedImage(6000, 4000, BufferedImage.TYPE_INT_RGB);
+
+    for (int y = 0; y < image.getHeight(); y += 4) {
+      for (int x = 0; x < image.getWidth(); x += 4) {
+
+        final int rgb = random.nextInt();
+
+        for (int i = 0; i < 4; i++) {
+          image.setRGB(x + i, y, rgb);
+          image.setRGB(x, y + i, rgb);
+        }
+      }
+    }
+
+    final List<File> files = new ArrayList<>();
+
+    for (int i = 0; i < FILES_COUNT; i++) {
+
+      final File file = new File(folder, i + ".jpg");
+
+      if (i == 0) {
+        ImageIO.write(image, "jpg", file);
+      } else {
+        Files.copy(files.get(0).toPath(), file.toPath());
+      }
+
+      files.add(file);
+    }
+
+    return files;
+  }
+
+  private static String names(final List<File> files) {
+
+    final List<String> names = new ArrayList<>();
+
+    synchronized (files) {
+      for (File file : files) {
+        names.add(file.getName());
+      }
+    }
+
+    return names.toString();
+  }
+
+  private static void report(final String message, final boolean ok) {
+    System.out.println((ok ? "ok      " : "FAILED  ") + message);
+    failed |= !ok;
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Checks {@link ImagePyramid}: the levels (each one half of the previous), the level chosen for a painted size (never
+ * scaled up, scaled down by at most a half) and the halving (every pixel the average of 2x2 pixels, no aliasing).
+ */
+public class ImagePyramidTest {
+
+  private static boolean failed;
+
+  public static void main(String[] args) {
+
+    //
+    // a checkerboard of 1 pixel black and white squares: halved, it must be a plain gray (not black or white, as the
+    // nearest neighbor would make it)
+
+    final BufferedImage image = new BufferedImage(1000, 800, BufferedImage.TYPE_INT_RGB);
+
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        image.setRGB(x, y, (x + y) % 2 == 0 ? 0xFFFFFF : 0x000000);
+      }
+    }
+
+    final long startTime = System.currentTimeMillis();
+    final ImagePyramid pyramid = new ImagePyramid(image, 64);
+    final long time = System.currentTimeMillis() - startTime;
+
+    //
+    // 1000 x 800, 500 x 400, 250 x 200, 125 x 100 (62 x 50 would be smaller than 64)
+
+    final StringBuilder levels = new StringBuilder();
+
+    for (int i = 0; i < pyramid.getLevelsCount(); i++) {
+      levels.append(i > 0 ? ", " : "").append(pyramid.getLevel(i).getWidth()).append(" x ").append(pyramid.getLevel(i).getHeight());
+    }
+
+    report("levels (built in " + time + " ms): " + levels, pyramid.getLevelsCount() == 4 && pyramid.getLevel(3).getWidth() == 125 && pyramid.getLevel(3).getHeight() == 100 && pyramid.getImage() == image);
+
+    //
+    // the level for a painted size: the smallest one not smaller than the size
+
+    checkLevel(pyramid, 1200, 960, 0);
+    checkLevel(pyramid, 1000, 800, 0);
+    checkLevel(pyramid, 501, 401, 0);
+    checkLevel(pyramid, 500, 400, 1);
+    checkLevel(pyramid, 300, 240, 1);
+    checkLevel(pyramid, 250, 100, 2);
+    checkLevel(pyramid, 100, 80, 3);
+    checkLevel(pyramid, 10, 8, 3);
+
+    //
+    // the halving
+
+    final BufferedImage level = pyramid.getLevel(1);
+
+    int min = 255;
+    int max = 0;
+
+    for (int y = 0; y < level.getHeight(); y++) {
+      for (int x = 0; x < level.getWidth(); x++) {
+        final int gray = level.getRGB(x, y) & 0xFF;
+        min = Math.min(min, gray);
+        max = Math.max(max, gray);
+      }
+    }
+
+    report("the checkerboard halved: gray between " + min + " and " + max, min >= 120 && max <= 135);
+
+    report("the levels of an opaque image are compact (3 bytes per pixel)", level.getType() == BufferedImage.TYPE_3BYTE_BGR);
+
+    //
+    // the alpha is kept
+
+    final BufferedImage transparent = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+    final BufferedImage transparentLevel = new ImagePyramid(transparent, 64).getLevel(1);
+
+    report("the levels of a transparent image have alpha", transparentLevel.getColorModel().hasAlpha() && (transparentLevel.getRGB(10, 10) >>> 24) == 0);
+
+    System.out.println(failed ? "FAILED" : "OK");
+
+    System.exit(failed ? 1 : 0);
+  }
+
+  private static void checkLevel(final ImagePyramid pyramid, final int width, final int height, final int expectedLevel) {
+
+    final BufferedImage level = pyramid.getLevel(width, height);
+
+    report("painted at " + width + " x " + height + ": level " + level.getWidth() + " x " + level.getHeight(), level == pyramid.getLevel(expectedLevel));
+  }
+
+  private static void report(final String message, final boolean ok) {
+    System.out.println((ok ? "ok      " : "FAILED  ") + message);
+    failed |= !ok;
+  }
+
+}
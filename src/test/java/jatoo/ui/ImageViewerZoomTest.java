@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) Cristian Sulea ( http://cristian.sulea.net )
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jatoo.ui;
+
+import java.awt.Color;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.ViewportLayout;
+
+/**
+ * Checks the zoom of {@link ImageViewer}: the point of the image under the anchor (the cursor) stays in place and each
+ * zoom (each frame, for the wheel) lays the viewport out once. Runs headless too (the viewer is not shown then).
+ */
+public class ImageViewerZoomTest {
+
+  private static final int IMAGE_WIDTH = 1600;
+  private static final int IMAGE_HEIGHT = 1200;
+
+  private static ImageViewer imageViewer;
+
+  private static int layouts;
+  private static int sizeChanges;
+
+  private static boolean failed;
+
+  public static void main(String[] args) throws Exception {
+
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+
+        imageViewer = new ImageViewer(createImage());
+
+        imageViewer.getViewport().setLayout(new ViewportLayout() {
+          public void layoutContainer(Container parent) {
+            layouts++;
+            super.layoutContainer(parent);
+          }
+        });
+
+        imageViewer.getViewport().getView().addPropertyChangeListener("preferredSize", new PropertyChangeListener() {
+          public void propertyChange(PropertyChangeEvent evt) {
+            sizeChanges++;
+          }
+        });
+
+        if (GraphicsEnvironment.isHeadless()) {
+          imageViewer.setSize(800, 600);
+          imageViewer.addNotify();
+          imageViewer.validate();
+        } else {
+          new TestFrame(imageViewer, 800, 600);
+        }
+      }
+    });
+
+    Thread.sleep(500);
+
+    //
+    // from best fit, then fractional zooms (as the wheel frames), anchored in different points
+
+    check(200, new Point(100, 100));
+    check(237.5, new Point(600, 150));
+    check(119.3, new Point(50, 400));
+    check(400, null);
+    check(100, new Point(700, 500));
+
+    //
+    // zoom in (the steps that still fit are skipped, a single layout)
+
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+
+        imageViewer.setBestFit();
+
+        final int layoutsBefore = layouts;
+        imageViewer.zoomIn();
+
+        report("zoomIn() from best fit to " + imageViewer.getZoom() + "%: " + (layouts - layoutsBefore) + " layout(s)", layouts - layoutsBefore == 1);
+      }
+    });
+
+    //
+    // the wheel: 3 notches in a row, the animator zooms once per frame
+
+    final Point anchor = new Point(250, 350);
+    final Point2D[] imagePoint = new Point2D[1];
+    final int[] counters = new int[2];
+
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+
+        imagePoint[0] = getImagePoint(anchor);
+        counters[0] = layouts;
+        counters[1] = sizeChanges;
+
+        final JViewport viewport = imageViewer.getViewport();
+
+        for (int i = 0; i < 3; i++) {
+          viewport.dispatchEvent(new MouseWheelEvent(viewport, MouseWheelEvent.MOUSE_WHEEL, System.currentTimeMillis(), 0, anchor.x, anchor.y, 0, false, MouseWheelEvent.WHEEL_UNIT_SCROLL, 3, -1));
+        }
+      }
+    });
+
+    Thread.sleep(1500);
+
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+
+        final Point2D newImagePoint = getImagePoint(anchor);
+        final int frameLayouts = layouts - counters[0];
+        final int frames = sizeChanges - counters[1];
+
+        report("wheel to " + format(imageViewer.getPreciseZoom()) + "%: " + frames + " frame(s), " + frameLayouts + " layout(s), image point " + format(imagePoint[0]) + " -> " + format(newImagePoint), frames > 1 && frameLayouts == frames && isSamePoint(imagePoint[0], newImagePoint));
+      }
+    });
+
+    System.out.println(failed ? "FAILED" : "OK");
+
+    if (GraphicsEnvironment.isHeadless()) {
+      System.exit(failed ? 1 : 0);
+    }
+  }
+
+  private static void check(final double zoom, final Point anchor) throws Exception {
+
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+
+        final Rectangle viewRect = imageViewer.getViewport().getViewRect();
+        final Point point = anchor != null ? anchor : new Point(viewRect.width / 2, viewRect.height / 2);
+
+        final Point2D imagePoint = getImagePoint(point);
+        final int layoutsBefore = layouts;
+
+        imageViewer.zoom(zoom, anchor);
+
+        final Point2D newImagePoint = getImagePoint(point);
+
+        report("zoom " + format(zoom) + "% at " + (anchor != null ? "(" + anchor.x + ", " + anchor.y + ")" : "the center") + ": image point " + format(imagePoint) + " -> " + format(newImagePoint) + ", " + (layouts - layoutsBefore) + " layout(s)", layouts - layoutsBefore == 1 && isSamePoint(imagePoint, newImagePoint));
+      }
+    });
+  }
+
+  /**
+   * The point of the image (in image pixels) under the specified point of the viewport.
+   */
+  private static Point2D getImagePoint(final Point point) {
+
+    final ImageCanvas canvas = (ImageCanvas) imageViewer.getViewport().getView();
+    final Rectangle bounds = canvas.calculateImageBounds(canvas.getWidth(), canvas.getHeight());
+    final Point viewPosition = imageViewer.getViewport().getViewPosition();
+
+    return new Point2D.Double((viewPosition.x + point.x - bounds.x) * (double) IMAGE_WIDTH / bounds.width, (viewPosition.y + point.y - bounds.y) * (double) IMAGE_HEIGHT / bounds.height);
+  }
+
+  /**
+   * The same point, give or take the rounding of the view position (one pixel of the viewport) and of the best fit. The
+   * axes the view position is clamped on (at the edges of the canvas) are not checked.
+   */
+  private static boolean isSamePoint(final Point2D p1, final Point2D p2) {
+
+    final double tolerance = 2 * 100 / Math.min(imageViewer.getPreciseZoom(), 100);
+
+    final JViewport viewport = imageViewer.getViewport();
+    final Point viewPosition = viewport.getViewPosition();
+    final Dimension viewSize = viewport.getViewSize();
+    final Dimension extentSize = viewport.getExtentSize();
+
+    final boolean clampedX = viewPosition.x == 0 || viewPosition.x == viewSize.width - extentSize.width;
+    final boolean clampedY = viewPosition.y == 0 || viewPosition.y == viewSize.height - extentSize.height;
+
+    if (clampedX || clampedY) {
+      System.out.println("        (clamped at the edge of the canvas on " + (clampedX ? clampedY ? "x and y" : "x" : "y") + ")");
+    }
+
+    return (clampedX || Math.abs(p1.getX() - p2.getX()) <= tolerance) && (clampedY || Math.abs(p1.getY() - p2.getY()) <= tolerance);
+  }
+
+  private static void report(final String message, final boolean ok) {
+    System.out.println((ok ? "ok      " : "FAILED  ") + message);
+    failed |= !ok;
+  }
+
+  private static String format(final double value) {
+    return String.format("%.1f", value);
+  }
+
+  private static String format(final Point2D point) {
+    return "(" + format(point.getX()) + ", " + format(point.getY()) + ")";
+  }
+
+  private static BufferedImage createImage() {
+
+    final BufferedImage image = new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D g = image.createGraphics();
+
+    g.setColor(Color.WHITE);
+    g.fillRect(0, 0, IMAGE_WIDTH, IMAGE_HEIGHT);
+
+    g.setColor(Color.LIGHT_GRAY);
+
+    for (int x = 0; x < IMAGE_WIDTH; x += 100) {
+      g.drawLine(x, 0, x, IMAGE_HEIGHT);
+    }
+
+    for (int y = 0; y < IMAGE_HEIGHT; y += 100) {
+      g.drawLine(0, y, IMAGE_WIDTH, y);
+    }
+
+    g.dispose();
+
+    return image;
+  }
+
+}